@@ -0,0 +1,215 @@
+package com.ecommerce.userservice.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import redis.clients.jedis.exceptions.JedisException;
+
+import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of registered email addresses, so registration can skip the existsByEmail
+ * query for new ones. Built in the background after startup and updated on every insert,
+ * including those announced by other nodes.
+ */
+@Component
+public class EmailBloomFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailBloomFilter.class);
+
+    private static final String REGISTERED_CHANNEL = "user-emails:registered";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${user.email-filter.expected-insertions:1000000}")
+    private long expectedInsertions;
+
+    @Value("${user.email-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private AtomicLongArray bits;
+    private long bitCount;
+    private int hashCount;
+    private final AtomicLong insertions = new AtomicLong();
+    // Until the initial scan completes every email is reported as possibly registered
+    private volatile boolean ready;
+
+    private Counter definitelyAbsent;
+    private Counter possiblyPresent;
+
+    @PostConstruct
+    public void init() {
+        bitCount = Math.max(64, (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        bits = new AtomicLongArray((int) ((bitCount + 63) / 64));
+
+        Gauge.builder("user.email-filter.memory", this, filter -> filter.bits.length() * 8.0)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("user.email-filter.insertions", insertions, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("user.email-filter.false-positive-rate", this, EmailBloomFilter::expectedFalsePositiveRate)
+                .description("Expected false positive rate at the current fill level")
+                .register(meterRegistry);
+        definitelyAbsent = Counter.builder("user.email-filter.checks").tag("result", "absent").register(meterRegistry);
+        possiblyPresent = Counter.builder("user.email-filter.checks").tag("result", "maybe").register(meterRegistry);
+
+        invalidationBus.subscribe(REGISTERED_CHANNEL, this::addAll, () -> { });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBuild() {
+        Thread thread = new Thread(this::build, "email-filter-build");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Streams emails with a cursor so the scan does not load the table into memory
+    void build() {
+        long start = System.currentTimeMillis();
+        try {
+            transactionTemplate.execute(status -> {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement("SELECT email FROM users");
+                    statement.setFetchSize(1000);
+                    return statement;
+                }, row -> {
+                    add(row.getString(1));
+                });
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.error("Email filter build failed, registrations keep checking the database", e);
+            return;
+        }
+        ready = true;
+        log.info("Email filter built with {} emails in {} ms", insertions.get(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return false if the email is definitely not registered, true if it may be
+     */
+    public boolean mightContain(String email) {
+        if (!ready) {
+            possiblyPresent.increment();
+            return true;
+        }
+        long hash = hash(email);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                definitelyAbsent.increment();
+                return false;
+            }
+        }
+        possiblyPresent.increment();
+        return true;
+    }
+
+    /**
+     * Records a newly registered email on this node and announces it to the others.
+     */
+    public void register(String email) {
+        add(email);
+        try {
+            invalidationBus.publish(REGISTERED_CHANNEL, email);
+        } catch (JedisException e) {
+            // Other nodes only lose a filter hit; the unique constraint still rejects duplicates
+        }
+    }
+
+    /**
+     * Batch variant of register for bulk imports: one announcement for all the emails.
+     */
+    public void registerAll(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return;
+        }
+        for (String email : emails) {
+            add(email);
+        }
+        try {
+            invalidationBus.publish(REGISTERED_CHANNEL, String.join("\n", emails));
+        } catch (JedisException e) {
+            // As in register
+        }
+    }
+
+    // Announcements carry one or more newline-separated emails
+    private void addAll(String emails) {
+        int start = 0;
+        int end;
+        while ((end = emails.indexOf('\n', start)) >= 0) {
+            add(emails.substring(start, end));
+            start = end + 1;
+        }
+        add(emails.substring(start));
+    }
+
+    private void add(String email) {
+        long hash = hash(email);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            while (((word = bits.get(index)) & mask) == 0) {
+                if (bits.compareAndSet(index, word, word | mask)) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        // Re-adding a known email (e.g. our own announcement echoed back) sets no new bits
+        if (changed) {
+            insertions.incrementAndGet();
+        }
+    }
+
+    private double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashCount * (double) insertions.get() / bitCount), hashCount);
+    }
+
+    // FNV-1a over the UTF-16 chars, finished with the murmur3 64-bit mixer
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,68 @@
+package com.ecommerce.userservice.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmailBloomFilterTest {
+
+    private static final int EMAILS = 100_000;
+
+    private EmailBloomFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new EmailBloomFilter();
+        ReflectionTestUtils.setField(filter, "jdbcTemplate", mock(JdbcTemplate.class));
+        ReflectionTestUtils.setField(filter, "transactionTemplate", mock(TransactionTemplate.class));
+        ReflectionTestUtils.setField(filter, "invalidationBus", mock(InvalidationBus.class));
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "expectedInsertions", (long) EMAILS);
+        ReflectionTestUtils.setField(filter, "falsePositiveRate", 0.01);
+        filter.init();
+    }
+
+    @Test
+    void reportsEveryEmailAsPossiblyRegisteredUntilBuilt() {
+        assertTrue(filter.mightContain("new@example.com"));
+    }
+
+    @Test
+    void hasNoFalseNegativesAndStaysNearTargetFalsePositiveRate() {
+        filter.build();
+        for (int i = 0; i < EMAILS; i++) {
+            filter.register("user" + i + "@example.com");
+        }
+
+        for (int i = 0; i < EMAILS; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < EMAILS; i++) {
+            if (filter.mightContain("other" + i + "@example.org")) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / EMAILS;
+        assertTrue(rate < 0.0125, "false positive rate " + rate);
+    }
+
+    @Test
+    void failedBuildKeepsCheckingTheDatabase() {
+        TransactionTemplate failing = mock(TransactionTemplate.class);
+        when(failing.execute(any())).thenThrow(new IllegalStateException("database unavailable"));
+        ReflectionTestUtils.setField(filter, "transactionTemplate", failing);
+
+        filter.build();
+
+        assertTrue(filter.mightContain("new@example.com"));
+    }
+}
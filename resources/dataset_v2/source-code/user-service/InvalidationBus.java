@@ -0,0 +1,171 @@
+package com.ecommerce.userservice.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisException;
+
+import javax.annotation.PreDestroy;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Redis pub/sub used to drop node-local cached state on every node.
+ * All channels share one subscriber connection, held on a daemon thread that reconnects
+ * after failures. RedisConfig sizes the pool with one connection for it.
+ */
+@Component
+public class InvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+    @Autowired
+    private JedisPool redisPool;
+
+    private final Map<String, List<Handler>> handlers = new ConcurrentHashMap<>();
+    private final Listener listener = new Listener();
+    private Thread thread;
+
+    /**
+     * Starts listening on a channel.
+     * @param onMessage Called with each published message
+     * @param onResubscribe Called before every (re)subscribe, since messages may have been
+     *                      missed while disconnected
+     */
+    public synchronized void subscribe(String channel, Consumer<String> onMessage, Runnable onResubscribe) {
+        handlers.computeIfAbsent(channel, c -> new CopyOnWriteArrayList<>()).add(new Handler(onMessage, onResubscribe));
+        if (thread == null) {
+            thread = new Thread(this::listen, "invalidation-bus");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            listener.subscribeMissing();
+        }
+    }
+
+    /**
+     * Publishes a message to every subscriber, including this node's.
+     * @throws JedisException if Redis is unavailable
+     */
+    public void publish(String channel, String message) {
+        try (Jedis redis = redisPool.getResource()) {
+            redis.publish(channel, message);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (thread != null) {
+            thread.interrupt();
+            if (listener.isSubscribed()) {
+                listener.unsubscribe();
+            }
+        }
+    }
+
+    // subscribe() blocks, so this thread holds one pooled connection for its lifetime
+    private void listen() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Jedis redis = redisPool.getResource()) {
+                String[] channels;
+                synchronized (this) {
+                    channels = listener.reset();
+                }
+                for (String channel : channels) {
+                    for (Handler handler : handlers.get(channel)) {
+                        handler.resubscribed(channel);
+                    }
+                }
+                redis.subscribe(listener, channels);
+            } catch (JedisException e) {
+                log.warn("Invalidation bus subscription lost, retrying", e);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private class Listener extends JedisPubSub {
+        // Channels sent to Redis on the current connection
+        private final Set<String> requested = new HashSet<>();
+
+        String[] reset() {
+            requested.clear();
+            requested.addAll(handlers.keySet());
+            return requested.toArray(new String[0]);
+        }
+
+        // Channels registered after the connection was opened; caller holds the bus lock
+        void subscribeMissing() {
+            if (!isSubscribed()) {
+                // Picked up by onSubscribe once the connection is confirmed
+                return;
+            }
+            for (String channel : handlers.keySet()) {
+                if (requested.add(channel)) {
+                    try {
+                        subscribe(channel);
+                    } catch (JedisException e) {
+                        // The connection is being lost; the reconnect subscribes every channel
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+            synchronized (InvalidationBus.this) {
+                subscribeMissing();
+            }
+        }
+
+        @Override
+        public void onMessage(String channel, String message) {
+            List<Handler> channelHandlers = handlers.get(channel);
+            if (channelHandlers != null) {
+                for (Handler handler : channelHandlers) {
+                    handler.received(channel, message);
+                }
+            }
+        }
+    }
+
+    private static final class Handler {
+        private final Consumer<String> onMessage;
+        private final Runnable onResubscribe;
+
+        Handler(Consumer<String> onMessage, Runnable onResubscribe) {
+            this.onMessage = onMessage;
+            this.onResubscribe = onResubscribe;
+        }
+
+        // A failing handler must not stop the listener thread or the other handlers
+        void received(String channel, String message) {
+            try {
+                onMessage.accept(message);
+            } catch (RuntimeException e) {
+                log.error("Invalidation handler for {} failed on message {}", channel, message, e);
+            }
+        }
+
+        void resubscribed(String channel) {
+            try {
+                onResubscribe.run();
+            } catch (RuntimeException e) {
+                log.error("Invalidation handler for {} failed on resubscribe", channel, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.ecommerce.userservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables Hibernate JDBC batching.
+ * Needs sequence-generated ids (see User.id): with IDENTITY, Hibernate has to run
+ * every INSERT immediately to learn the id and never batches them.
+ */
+@Configuration
+public class JpaBatchingConfig {
+
+    @Value("${user.jpa.batch-size:50}")
+    private int batchSize;
+
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer() {
+        return properties -> {
+            properties.put("hibernate.jdbc.batch_size", batchSize);
+            // Group statements by entity so interleaved saves still form batches
+            properties.put("hibernate.order_inserts", true);
+            properties.put("hibernate.order_updates", true);
+        };
+    }
+}
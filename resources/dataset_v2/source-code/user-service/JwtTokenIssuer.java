@@ -0,0 +1,155 @@
+package com.ecommerce.userservice.security;
+
+import io.jsonwebtoken.impl.TextCodec;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * Issues HS256-signed JWTs without going through the generic jjwt builder.
+ * The HMAC key and the encoded header are derived once; each thread reuses its own Mac
+ * and scratch buffers, so issuing a token allocates little beyond the result string.
+ * Tokens are byte-compatible with Jwts.builder().signWith(HS256, secret) and verify with jjwt.
+ */
+public class JwtTokenIssuer {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_LENGTH = 32;
+    private static final byte[] BASE64_URL =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(StandardCharsets.US_ASCII);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // base64url({"alg":"HS256"}) + '.', identical to what jjwt emits for HS256
+    private static final byte[] HEADER_PREFIX =
+            (base64Url("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8)) + ".").getBytes(StandardCharsets.US_ASCII);
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * @param base64Secret Secret in the same (Base64) form passed to jjwt's signWith(SignatureAlgorithm, String)
+     */
+    public JwtTokenIssuer(String base64Secret) {
+        // Decode exactly like jjwt so existing tokens and new tokens share one key
+        this.key = new SecretKeySpec(TextCodec.BASE64.decode(base64Secret), ALGORITHM);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(key));
+    }
+
+    /**
+     * Builds a signed token with sub, email, name, iat and exp claims.
+     * Null email or name claims are omitted, matching jjwt.
+     */
+    public String issue(String subject, String email, String name, long issuedAtMillis, long expiresAtMillis) {
+        Scratch s = scratch.get();
+
+        StringBuilder json = s.json;
+        json.setLength(0);
+        json.append("{\"sub\":");
+        appendJsonString(json, subject);
+        if (email != null) {
+            json.append(",\"email\":");
+            appendJsonString(json, email);
+        }
+        if (name != null) {
+            json.append(",\"name\":");
+            appendJsonString(json, name);
+        }
+        json.append(",\"iat\":").append(issuedAtMillis / 1000)
+            .append(",\"exp\":").append(expiresAtMillis / 1000)
+            .append('}');
+        byte[] payload = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        int signingInputLength = HEADER_PREFIX.length + base64UrlLength(payload.length);
+        int tokenLength = signingInputLength + 1 + base64UrlLength(SIGNATURE_LENGTH);
+        byte[] token = s.token(tokenLength);
+
+        System.arraycopy(HEADER_PREFIX, 0, token, 0, HEADER_PREFIX.length);
+        int pos = encodeBase64Url(payload, payload.length, token, HEADER_PREFIX.length);
+
+        Mac mac = s.mac;
+        mac.update(token, 0, signingInputLength);
+        try {
+            mac.doFinal(s.signature, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC signing failed", e);
+        }
+        token[pos++] = '.';
+        pos = encodeBase64Url(s.signature, SIGNATURE_LENGTH, token, pos);
+
+        return new String(token, 0, pos, StandardCharsets.US_ASCII);
+    }
+
+    private static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static int base64UrlLength(int length) {
+        return (length * 4 + 2) / 3;
+    }
+
+    // Unpadded base64url of src[0, length) into dst at pos; returns the end position
+    private static int encodeBase64Url(byte[] src, int length, byte[] dst, int pos) {
+        int i = 0;
+        for (; i + 3 <= length; i += 3) {
+            int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+            dst[pos++] = BASE64_URL[bits >>> 18];
+            dst[pos++] = BASE64_URL[(bits >>> 12) & 0x3F];
+            dst[pos++] = BASE64_URL[(bits >>> 6) & 0x3F];
+            dst[pos++] = BASE64_URL[bits & 0x3F];
+        }
+        int remaining = length - i;
+        if (remaining == 1) {
+            int bits = (src[i] & 0xFF) << 16;
+            dst[pos++] = BASE64_URL[bits >>> 18];
+            dst[pos++] = BASE64_URL[(bits >>> 12) & 0x3F];
+        } else if (remaining == 2) {
+            int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8;
+            dst[pos++] = BASE64_URL[bits >>> 18];
+            dst[pos++] = BASE64_URL[(bits >>> 12) & 0x3F];
+            dst[pos++] = BASE64_URL[(bits >>> 6) & 0x3F];
+        }
+        return pos;
+    }
+
+    private static String base64Url(byte[] src) {
+        byte[] dst = new byte[base64UrlLength(src.length)];
+        encodeBase64Url(src, src.length, dst, 0);
+        return new String(dst, StandardCharsets.US_ASCII);
+    }
+
+    private static final class Scratch {
+        final Mac mac;
+        final StringBuilder json = new StringBuilder(256);
+        final byte[] signature = new byte[SIGNATURE_LENGTH];
+        private byte[] token = new byte[512];
+
+        Scratch(SecretKeySpec key) {
+            try {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 unavailable", e);
+            }
+        }
+
+        byte[] token(int length) {
+            if (token.length < length) {
+                token = new byte[length];
+            }
+            return token;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.ecommerce.userservice.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for users.last_login_at.
+ * Logins record their timestamp in memory (last value per user wins) and a scheduled
+ * flush writes them with JDBC batch UPDATEs, so the login path does no database write.
+ * Pending updates are also flushed on shutdown.
+ */
+@Component
+public class LastLoginWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(LastLoginWriteBehind.class);
+
+    // Guard keeps an older value from a slower node from overwriting a newer one
+    private static final String UPDATE_SQL =
+            "UPDATE users SET last_login_at = ? WHERE id = ? AND (last_login_at IS NULL OR last_login_at < ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserEntityCacheEvictor entityCacheEvictor;
+
+    @Value("${user.last-login.flush-batch-size:500}")
+    private int batchSize;
+
+    private final ConcurrentHashMap<Long, Long> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private Counter flushed;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("user.last-login.pending", pending, Map::size)
+                .description("Last-login updates waiting to be flushed")
+                .register(meterRegistry);
+        flushed = Counter.builder("user.last-login.flushed")
+                .description("Last-login updates written to the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a login. Only the latest timestamp per user is kept until the next flush.
+     */
+    public void record(Long userId, long loginAtMillis) {
+        pending.merge(userId, loginAtMillis, Math::max);
+    }
+
+    @Scheduled(fixedDelayString = "${user.last-login.flush-interval-ms:5000}")
+    public void flush() {
+        synchronized (flushLock) {
+            List<Object[]> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            Iterator<Long> userIds = pending.keySet().iterator();
+            while (userIds.hasNext()) {
+                Long userId = userIds.next();
+                Long loginAt = pending.remove(userId);
+                if (loginAt == null) {
+                    continue;
+                }
+                Timestamp timestamp = new Timestamp(loginAt);
+                batch.add(new Object[] {timestamp, userId, timestamp});
+                if (batch.size() >= batchSize) {
+                    writeBatch(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void writeBatch(List<Object[]> batch) {
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch);
+            flushed.increment(batch.size());
+            // The JDBC update bypasses Hibernate, so drop second-level copies on every node
+            List<Long> userIds = new ArrayList<>(batch.size());
+            for (Object[] row : batch) {
+                userIds.add((Long) row[1]);
+            }
+            entityCacheEvictor.evictOnAllNodes(userIds);
+        } catch (RuntimeException e) {
+            log.warn("Flushing {} last-login updates failed, will retry", batch.size(), e);
+            // Put values back unless a newer login has been recorded meanwhile
+            for (Object[] row : batch) {
+                record((Long) row[1], ((Timestamp) row[0]).getTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.ecommerce.userservice.security;
+
+import com.ecommerce.userservice.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs BCrypt hashing and matching on a dedicated pool sized to the CPU count, off the
+ * servlet threads. When the queue is full, callers fail fast with ServiceBusyException.
+ * The cost is configured; startup calibration only reports a recommended one.
+ */
+@Component
+public class PasswordHasher {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHasher.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${user.password-hashing.threads:0}")
+    private int threads;
+
+    @Value("${user.password-hashing.queue-size:256}")
+    private int queueSize;
+
+    /**
+     * Longest a caller waits for a queued hash before giving up.
+     */
+    @Value("${user.password-hashing.max-wait-ms:2000}")
+    private long maxWaitMs;
+
+    /**
+     * BCrypt cost for new hashes. Must be the same on every node, since stored hashes are
+     * rehashed to it on login.
+     */
+    @Value("${user.password-hashing.strength:10}")
+    private int strength;
+
+    @Value("${user.password-hashing.target-ms:250}")
+    private long targetMs;
+
+    @Value("${user.password-hashing.min-strength:10}")
+    private int minStrength;
+
+    @Value("${user.password-hashing.max-strength:16}")
+    private int maxStrength;
+
+    private BCryptPasswordEncoder passwordEncoder;
+    private int recommendedStrength;
+    private ThreadPoolExecutor executor;
+    private Timer encodeTimer;
+    private Timer matchTimer;
+    private Counter rejected;
+
+    @PostConstruct
+    public void init() {
+        passwordEncoder = new BCryptPasswordEncoder(strength);
+        recommendedStrength = calibrateStrength();
+        Gauge.builder("user.password.hash.strength", this, hasher -> hasher.strength)
+                .description("BCrypt cost used for new hashes")
+                .register(meterRegistry);
+        Gauge.builder("user.password.hash.recommended-strength", this, hasher -> hasher.recommendedStrength)
+                .description("Highest BCrypt cost within target-ms on this node")
+                .register(meterRegistry);
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        encodeTimer = hashTimer("encode");
+        matchTimer = hashTimer("match");
+        rejected = Counter.builder("user.password.hash.rejected")
+                .description("Hash requests rejected because the queue was full or the wait timed out")
+                .register(meterRegistry);
+        Gauge.builder("user.password.hash.queue", executor, e -> e.getQueue().size())
+                .description("Hash requests waiting for a hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("user.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> encodeTimer.record(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> matchTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * Hashes a batch of passwords for bulk imports, keeping at most maxInFlight on the pool
+     * so logins still get through.
+     * @return Hashes in input order
+     * @throws ServiceBusyException if the pool rejects a hash while none of ours is in flight
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords, int maxInFlight) {
+        List<String> hashes = new ArrayList<>(rawPasswords.size());
+        Deque<Future<String>> inFlight = new ArrayDeque<>(maxInFlight);
+        for (CharSequence rawPassword : rawPasswords) {
+            Callable<String> task = () -> encodeTimer.record(() -> passwordEncoder.encode(rawPassword));
+            while (true) {
+                if (inFlight.size() >= maxInFlight) {
+                    hashes.add(await(inFlight.removeFirst()));
+                }
+                try {
+                    inFlight.addLast(executor.submit(task));
+                    break;
+                } catch (RejectedExecutionException e) {
+                    if (inFlight.isEmpty()) {
+                        rejected.increment();
+                        throw new ServiceBusyException("Password hashing capacity exhausted");
+                    }
+                    // Queue is full of other work; wait for one of ours and retry
+                    hashes.add(await(inFlight.removeFirst()));
+                }
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            hashes.add(await(inFlight.removeFirst()));
+        }
+        return hashes;
+    }
+
+    /**
+     * Whether a stored hash was produced with a cost other than the configured one.
+     */
+    public boolean needsRehash(String encodedPassword) {
+        // Modular crypt format: $2a$10$<salt+hash>
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(3) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) != strength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Finds the highest cost whose hash time stays within target-ms on this node.
+     */
+    private int calibrateStrength() {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minStrength);
+        long bestNanos = Long.MAX_VALUE;
+        // First runs include JIT warm-up; keep the fastest
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration-password");
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+
+        double baseMs = bestNanos / 1_000_000.0;
+        int calibrated = minStrength;
+        while (calibrated < maxStrength && baseMs * (1L << (calibrated + 1 - minStrength)) <= targetMs) {
+            calibrated++;
+        }
+        String baseTiming = String.format("%.1f", baseMs);
+        if (strength > calibrated) {
+            log.warn("BCrypt cost {} exceeds target {} ms on this node, which suggests cost {} ({} ms at cost {})",
+                    strength, targetMs, calibrated, baseTiming, minStrength);
+        } else {
+            log.info("BCrypt cost {} configured, cost {} recommended on this node ({} ms at cost {}, target {} ms)",
+                    strength, calibrated, baseTiming, minStrength, targetMs);
+        }
+        return calibrated;
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceBusyException("Password hashing capacity exhausted");
+        }
+
+        try {
+            return future.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            rejected.increment();
+            throw new ServiceBusyException("Password hashing timed out");
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Timer hashTimer(String operation) {
+        return Timer.builder("user.password.hash")
+                .description("BCrypt execution time on the hashing pool")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
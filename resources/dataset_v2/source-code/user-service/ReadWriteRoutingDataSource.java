@@ -0,0 +1,62 @@
+package com.ecommerce.userservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * Sends connections for read-only transactions to the replica and everything else to the primary.
+ * Must sit behind a LazyConnectionDataSourceProxy: the transaction's read-only flag is only
+ * known once the transaction has started, after JPA would otherwise have taken a connection.
+ * Falls back to the primary while the replica lags or is unreachable (see ReplicaLagMonitor).
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    private static final ThreadLocal<Boolean> forcePrimary = new ThreadLocal<>();
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final Counter primaryRoutes;
+    private final Counter replicaRoutes;
+
+    public ReadWriteRoutingDataSource(ReplicaLagMonitor lagMonitor, MeterRegistry meterRegistry) {
+        this.lagMonitor = lagMonitor;
+        this.primaryRoutes = Counter.builder("user.datasource.routes").tag("target", PRIMARY).register(meterRegistry);
+        this.replicaRoutes = Counter.builder("user.datasource.routes").tag("target", REPLICA).register(meterRegistry);
+    }
+
+    /**
+     * Runs a read on the primary even inside a read-only transaction, e.g. to read a user's own recent write.
+     * The query must open its transaction inside the supplier.
+     */
+    public static <T> T onPrimary(Supplier<T> read) {
+        Boolean previous = forcePrimary.get();
+        forcePrimary.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            if (previous == null) {
+                forcePrimary.remove();
+            } else {
+                forcePrimary.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && forcePrimary.get() == null
+                && lagMonitor.isReplicaUsable()) {
+            replicaRoutes.increment();
+            return REPLICA;
+        }
+        primaryRoutes.increment();
+        return PRIMARY;
+    }
+}
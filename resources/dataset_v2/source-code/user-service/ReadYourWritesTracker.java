@@ -0,0 +1,77 @@
+package com.ecommerce.userservice.repository;
+
+import com.ecommerce.userservice.cache.InvalidationBus;
+import com.ecommerce.userservice.cache.UserCache;
+import com.ecommerce.userservice.config.ReadWriteRoutingDataSource;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Remembers users written in the last few seconds so their reads skip the replica and
+ * cannot cache an old row. Writes on other nodes are learned from user cache invalidations.
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    /**
+     * Should exceed user.datasource.replica.max-lag-ms, beyond which the replica is not used at all.
+     */
+    @Value("${user.datasource.replica.read-your-writes-ms:5000}")
+    private long windowMs;
+
+    private Cache<Long, Boolean> recentWrites;
+
+    @PostConstruct
+    public void init() {
+        recentWrites = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(windowMs))
+                .maximumSize(100_000)
+                .build();
+        invalidationBus.subscribe(UserCache.INVALIDATION_CHANNEL, this::onRemoteWrite, () -> { });
+    }
+
+    /**
+     * Pins reads of this user to the primary for the stickiness window.
+     */
+    public void recordWrite(Long userId) {
+        recentWrites.put(userId, Boolean.TRUE);
+    }
+
+    /**
+     * Runs a read of one user, on the primary if that user was written recently.
+     */
+    public <T> T read(Long userId, Supplier<T> query) {
+        return recentWrites.getIfPresent(userId) != null ? ReadWriteRoutingDataSource.onPrimary(query) : query.get();
+    }
+
+    /**
+     * Runs a read of several users, on the primary if any of them was written recently.
+     */
+    public <T> T read(Collection<Long> userIds, Supplier<T> query) {
+        for (Long userId : userIds) {
+            if (recentWrites.getIfPresent(userId) != null) {
+                return ReadWriteRoutingDataSource.onPrimary(query);
+            }
+        }
+        return query.get();
+    }
+
+    private void onRemoteWrite(String userId) {
+        try {
+            recordWrite(Long.valueOf(userId));
+        } catch (NumberFormatException e) {
+            // Not a user id; nothing to pin
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.ecommerce.userservice.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.SetParams;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rollup of active users created in the last 30 days, the figure behind findRecentActiveUsers.
+ * Redis holds one counter per creation day ("users:recent-active:2024-05-31"), so reading the
+ * count is one MGET. A scheduled reconciliation recounts the window to correct drift.
+ */
+@Component
+public class RecentActiveUsersRollup {
+
+    private static final Logger log = LoggerFactory.getLogger(RecentActiveUsersRollup.class);
+
+    private static final String KEY_PREFIX = "users:recent-active:";
+
+    // Same window as findRecentActiveUsers: created_at >= CURRENT_DATE - 30
+    private static final int WINDOW_DAYS = 30;
+
+    private static final String RECOUNT_SQL =
+            "SELECT CAST(created_at AS date), COUNT(*) FROM users "
+            + "WHERE is_active = true AND created_at >= ? GROUP BY CAST(created_at AS date)";
+
+    // created_at holds JVM-local timestamps, so days are bucketed in the JVM zone
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    @Autowired
+    private JedisPool redisPool;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter rollupReads;
+    private Counter partialReads;
+    private Counter databaseReads;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    @PostConstruct
+    public void init() {
+        rollupReads = Counter.builder("user.recent-active.reads").tag("source", "rollup").register(meterRegistry);
+        partialReads = Counter.builder("user.recent-active.reads").tag("source", "partial").register(meterRegistry);
+        databaseReads = Counter.builder("user.recent-active.reads").tag("source", "database").register(meterRegistry);
+    }
+
+    /**
+     * Records a user becoming active (registration or reactivation).
+     */
+    public void userActivated(Instant createdAt) {
+        adjust(createdAt, 1);
+    }
+
+    /**
+     * Records several users created active at the same time, e.g. one bulk import chunk.
+     */
+    public void usersActivated(Instant createdAt, int count) {
+        if (count > 0) {
+            adjust(createdAt, count);
+        }
+    }
+
+    /**
+     * Records a user being deactivated.
+     */
+    public void userDeactivated(Instant createdAt) {
+        adjust(createdAt, -1);
+    }
+
+    /**
+     * Start of the window: midnight 30 days ago, as CURRENT_DATE - 30 in findRecentActiveUsers.
+     */
+    public Instant windowStart() {
+        return windowStartDate().atStartOfDay(zone).toInstant();
+    }
+
+    /**
+     * @return Number of active users created in the last 30 days; while buckets are missing,
+     *         the sum of the present ones until a background rebuild restores them
+     */
+    public long count() {
+        LocalDate start = windowStartDate();
+        String[] keys = new String[WINDOW_DAYS + 1];
+        for (int i = 0; i <= WINDOW_DAYS; i++) {
+            keys[i] = key(start.plusDays(i));
+        }
+        try (Jedis redis = redisPool.getResource()) {
+            long total = 0;
+            boolean complete = true;
+            for (String value : redis.mget(keys)) {
+                if (value == null) {
+                    complete = false;
+                } else {
+                    total += Long.parseLong(value);
+                }
+            }
+            if (complete) {
+                rollupReads.increment();
+            } else {
+                partialReads.increment();
+                rebuildInBackground();
+            }
+            return total;
+        } catch (JedisException e) {
+            databaseReads.increment();
+            return sum(recount(start));
+        }
+    }
+
+    /**
+     * Recounts the window from the users table and overwrites every bucket.
+     * Also creates tomorrow's bucket so reads just after midnight find it.
+     * @return Recounted total
+     */
+    @Scheduled(fixedDelayString = "${user.recent-active.reconcile-interval-ms:600000}",
+               initialDelayString = "${user.recent-active.reconcile-initial-delay-ms:60000}")
+    public long reconcile() {
+        LocalDate start = windowStartDate();
+        Map<LocalDate, Long> counts = recount(start);
+        databaseReads.increment();
+        try (Jedis redis = redisPool.getResource()) {
+            Pipeline pipeline = redis.pipelined();
+            for (int i = 0; i <= WINDOW_DAYS; i++) {
+                LocalDate day = start.plusDays(i);
+                pipeline.set(key(day), String.valueOf(counts.getOrDefault(day, 0L)),
+                        SetParams.setParams().px(ttlMillis(day)));
+            }
+            LocalDate tomorrow = start.plusDays(WINDOW_DAYS + 1);
+            pipeline.set(key(tomorrow), "0", SetParams.setParams().nx().px(ttlMillis(tomorrow)));
+            pipeline.sync();
+        } catch (JedisException e) {
+            log.warn("Writing recent active users rollup failed", e);
+        }
+        return sum(counts);
+    }
+
+    // One rebuild per node at a time; later callers keep reading the partial count
+    private void rebuildInBackground() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                reconcile();
+            } catch (RuntimeException e) {
+                log.warn("Rebuilding recent active users rollup failed", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        }, "recent-active-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void adjust(Instant createdAt, long delta) {
+        LocalDate day = createdAt.atZone(zone).toLocalDate();
+        if (day.isBefore(windowStartDate())) {
+            return;
+        }
+        String key = key(day);
+        try (Jedis redis = redisPool.getResource()) {
+            Pipeline pipeline = redis.pipelined();
+            pipeline.incrBy(key, delta);
+            pipeline.pexpire(key, ttlMillis(day));
+            pipeline.sync();
+        } catch (JedisException e) {
+            // The count stays off by one until the next reconciliation
+            log.warn("Updating recent active users rollup failed", e);
+        }
+    }
+
+    private Map<LocalDate, Long> recount(LocalDate start) {
+        Map<LocalDate, Long> counts = new HashMap<>();
+        jdbcTemplate.query(RECOUNT_SQL, row -> {
+            counts.put(row.getDate(1).toLocalDate(), row.getLong(2));
+        }, java.sql.Date.valueOf(start));
+        return counts;
+    }
+
+    private LocalDate windowStartDate() {
+        return LocalDate.now(zone).minusDays(WINDOW_DAYS);
+    }
+
+    // Keep a bucket until the day after it leaves the window
+    private long ttlMillis(LocalDate day) {
+        long expiresAt = day.plusDays(WINDOW_DAYS + 2).atStartOfDay(zone).toInstant().toEpochMilli();
+        return Math.max(1, expiresAt - System.currentTimeMillis());
+    }
+
+    private static String key(LocalDate day) {
+        return KEY_PREFIX + day;
+    }
+
+    private static long sum(Map<LocalDate, Long> counts) {
+        long total = 0;
+        for (long count : counts.values()) {
+            total += count;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,79 @@
+package com.ecommerce.userservice.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.time.Duration;
+
+/**
+ * Redis connection configuration for the user service.
+ * Jedis connections are not thread-safe, so every request thread borrows
+ * its own connection from a shared pool and returns it when done.
+ */
+@Configuration
+public class RedisConfig {
+
+    @Value("${user.redis.host:localhost}")
+    private String host;
+
+    @Value("${user.redis.port:6379}")
+    private int port;
+
+    @Value("${user.redis.timeout-ms:2000}")
+    private int timeoutMs;
+
+    @Value("${user.redis.pool.max-total:64}")
+    private int maxTotal;
+
+    @Value("${user.redis.pool.max-idle:64}")
+    private int maxIdle;
+
+    @Value("${user.redis.pool.min-idle:8}")
+    private int minIdle;
+
+    /**
+     * Maximum time a request thread waits for a free connection.
+     * Kept short so a saturated pool degrades to database reads instead of queueing.
+     */
+    @Value("${user.redis.pool.max-wait-ms:50}")
+    private long maxWaitMs;
+
+    @Bean(destroyMethod = "close")
+    public JedisPool jedisPool(MeterRegistry meterRegistry) {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        // Plus the connection InvalidationBus holds for its subscriber
+        poolConfig.setMaxTotal(maxTotal + 1);
+        poolConfig.setMaxIdle(maxIdle);
+        poolConfig.setMinIdle(minIdle);
+        poolConfig.setBlockWhenExhausted(true);
+        poolConfig.setMaxWait(Duration.ofMillis(maxWaitMs));
+        poolConfig.setJmxEnabled(false);
+
+        JedisPool pool = new JedisPool(poolConfig, host, port, timeoutMs);
+        registerPoolMetrics(pool, meterRegistry);
+        return pool;
+    }
+
+    private void registerPoolMetrics(JedisPool pool, MeterRegistry registry) {
+        Gauge.builder("user.redis.pool.active", pool, JedisPool::getNumActive)
+                .description("Redis connections currently borrowed")
+                .register(registry);
+        Gauge.builder("user.redis.pool.idle", pool, JedisPool::getNumIdle)
+                .description("Redis connections idle in the pool")
+                .register(registry);
+        Gauge.builder("user.redis.pool.waiters", pool, JedisPool::getNumWaiters)
+                .description("Threads blocked waiting for a Redis connection")
+                .register(registry);
+        Gauge.builder("user.redis.pool.borrow.wait.mean", pool, JedisPool::getMeanBorrowWaitTimeMillis)
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("user.redis.pool.borrow.wait.max", pool, JedisPool::getMaxBorrowWaitTimeMillis)
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+}
@@ -0,0 +1,77 @@
+package com.ecommerce.userservice.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Polls the replica's replication lag so routing can fall back to the primary.
+ * The replica counts as usable while the last probe succeeded recently and reported
+ * a lag within the configured maximum.
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    /**
+     * Lag in milliseconds on a PostgreSQL standby: 0 while streaming with everything replayed,
+     * otherwise the age of the last replayed transaction.
+     * The probing user needs pg_read_all_stats to see the WAL receiver status.
+     */
+    public static final String POSTGRES_LAG_QUERY =
+            "SELECT CASE WHEN EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') "
+            + "AND pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS bigint) END";
+
+    private final JdbcTemplate replica;
+    private final String lagQuery;
+    private final long maxLagMs;
+    private final long staleAfterMs;
+
+    private volatile long lagMs = -1;
+    private volatile long lastSuccessMillis;
+
+    /**
+     * @param lagQuery Query returning the lag in milliseconds, POSTGRES_LAG_QUERY in production
+     * @param staleAfterMs How long a successful probe counts, a few probe intervals
+     */
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, long maxLagMs, long staleAfterMs,
+                             MeterRegistry meterRegistry) {
+        this.replica = new JdbcTemplate(replica);
+        this.replica.setQueryTimeout(1);
+        this.lagQuery = lagQuery;
+        this.maxLagMs = maxLagMs;
+        this.staleAfterMs = staleAfterMs;
+        Gauge.builder("user.datasource.replica.lag", this, monitor -> monitor.lagMs)
+                .baseUnit("milliseconds")
+                .description("Replication lag from the last probe, -1 when unknown")
+                .register(meterRegistry);
+        Gauge.builder("user.datasource.replica.usable", this, monitor -> monitor.isReplicaUsable() ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    public boolean isReplicaUsable() {
+        return lagMs >= 0 && lagMs <= maxLagMs
+                && System.currentTimeMillis() - lastSuccessMillis <= staleAfterMs;
+    }
+
+    @Scheduled(fixedDelayString = "${user.datasource.replica.lag-check-interval-ms:1000}")
+    public void probe() {
+        try {
+            Long lag = replica.queryForObject(lagQuery, Long.class);
+            lagMs = lag != null ? Math.max(0, lag) : -1;
+            lastSuccessMillis = System.currentTimeMillis();
+        } catch (DataAccessException e) {
+            if (lagMs >= 0) {
+                log.warn("Replica lag probe failed, routing reads to the primary", e);
+            }
+            lagMs = -1;
+        }
+    }
+}
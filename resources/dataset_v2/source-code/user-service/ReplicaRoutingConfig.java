@@ -0,0 +1,93 @@
+package com.ecommerce.userservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read/write split between the primary (spring.datasource.*) and one PostgreSQL replica,
+ * active when user.datasource.replica.url is set.
+ * Read-only transactions go to the replica, see ReadWriteRoutingDataSource.
+ */
+@Configuration
+@ConditionalOnProperty(name = "user.datasource.replica.url")
+public class ReplicaRoutingConfig {
+
+    @Value("${user.datasource.replica.url}")
+    private String replicaUrl;
+
+    @Value("${user.datasource.replica.username:${spring.datasource.username:}}")
+    private String replicaUsername;
+
+    @Value("${user.datasource.replica.password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    @Value("${user.datasource.replica.max-pool-size:20}")
+    private int replicaMaxPoolSize;
+
+    @Value("${user.datasource.replica.max-lag-ms:2000}")
+    private long maxLagMs;
+
+    @Value("${user.datasource.replica.lag-check-interval-ms:1000}")
+    private long lagCheckIntervalMs;
+
+    /**
+     * Overridable so the routing can be exercised against two local databases of another kind.
+     */
+    @Value("${user.datasource.replica.lag-query:}")
+    private String lagQuery;
+
+    @Bean
+    public DataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public DataSource replicaDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setJdbcUrl(replicaUrl);
+        dataSource.setUsername(replicaUsername);
+        dataSource.setPassword(replicaPassword);
+        dataSource.setMaximumPoolSize(replicaMaxPoolSize);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replica,
+                                               MeterRegistry meterRegistry) {
+        String query = lagQuery.isEmpty() ? ReplicaLagMonitor.POSTGRES_LAG_QUERY : lagQuery;
+        return new ReplicaLagMonitor(replica, query, maxLagMs, 3 * lagCheckIntervalMs, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor lagMonitor,
+                                 MeterRegistry meterRegistry) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(lagMonitor, meterRegistry);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReadWriteRoutingDataSource.PRIMARY, primary);
+        targets.put(ReadWriteRoutingDataSource.REPLICA, replica);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        // Defers choosing a target until the first statement, when the read-only flag is set
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,12 @@
+package com.ecommerce.userservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs (e.g. last-login write-behind flushes).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,32 @@
+package com.ecommerce.userservice.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Opt-in Hibernate second-level cache for User (by id and by email) and query cache for
+ * the name searches, enabled with user.jpa.second-level-cache.enabled=true.
+ * Regions are node-local Caffeine caches behind hibernate-jcache, bounded in application.conf.
+ * Statistics are on so the actuator exports hit and miss counts per region.
+ */
+@Configuration
+@ConditionalOnProperty(name = "user.jpa.second-level-cache.enabled", havingValue = "true")
+public class SecondLevelCacheConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer() {
+        return properties -> {
+            properties.put("hibernate.cache.use_second_level_cache", true);
+            properties.put("hibernate.cache.use_query_cache", true);
+            properties.put("hibernate.cache.region.factory_class", "jcache");
+            properties.put("hibernate.javax.cache.provider",
+                    "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider");
+            properties.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+            // Only entities marked @Cacheable, i.e. User
+            properties.put("javax.persistence.sharedCache.mode", "ENABLE_SELECTIVE");
+            properties.put("hibernate.generate_statistics", true);
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package com.ecommerce.userservice.exception;
+
+/**
+ * Thrown when a bounded resource (e.g. the password hashing pool) is saturated.
+ * Controllers translate it into 503 Service Unavailable so clients back off and retry.
+ */
+public class ServiceBusyException extends RuntimeException {
+
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
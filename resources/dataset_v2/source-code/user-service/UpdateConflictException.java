@@ -0,0 +1,13 @@
+package com.ecommerce.userservice.exception;
+
+/**
+ * Thrown when an update was based on an outdated version of the user,
+ * either stated by the client or detected by the optimistic lock.
+ * Controllers translate it into 409 Conflict so clients re-read before retrying.
+ */
+public class UpdateConflictException extends RuntimeException {
+
+    public UpdateConflictException(String message) {
+        super(message);
+    }
+}
@@ -1,27 +1,50 @@
 package com.ecommerce.userservice.model;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.OptimisticLock;
+
 import javax.persistence.*;
-import java.util.Date;
+import java.time.Instant;
 
 /**
  * User entity representing system users.
  * Stores user profile information, authentication data, and preferences.
  * Includes audit fields for tracking creation and modification timestamps.
+ * Optionally second-level cached by id and by email (see SecondLevelCacheConfig).
  */
 @Entity
 @Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@NaturalIdCache(region = "users-by-email")
+@DynamicUpdate
 public class User {
 
+    // Jackson's default java.util.Date format, kept so API responses do not change
+    public static final String JSON_TIMESTAMP_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSxxx";
+
+    /**
+     * Drawn from users_id_seq 50 at a time (pooled optimizer), so inserts can be JDBC-batched.
+     * The sequence must be created with INCREMENT BY 50, see users_id_sequence_pooled.sql.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 50)
     private Long id;
 
+    @NaturalId
     @Column(nullable = false, unique = true)
     private String email;
 
     @Column(nullable = false)
     @JsonIgnore // Exclude password from JSON serialization
+    @OptimisticLock(excluded = true) // Rehashing on login must not invalidate versions clients hold
     private String password;
 
     @Column(nullable = false)
@@ -44,14 +67,22 @@ public class User {
     /**
      * Timestamp when user account was created.
      * Used for user analytics and account age calculations.
+     * Serialized in the same format java.util.Date produced, e.g. 2024-05-31T10:15:30.123+00:00.
      */
     @Column(name = "created_at")
-    @Temporal(TemporalType.TIMESTAMP)
-    private Date createdAt;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = JSON_TIMESTAMP_PATTERN, timezone = "UTC")
+    private Instant createdAt;
 
     @Column(name = "last_login_at")
-    @Temporal(TemporalType.TIMESTAMP)
-    private Date lastLoginAt;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = JSON_TIMESTAMP_PATTERN, timezone = "UTC")
+    @OptimisticLock(excluded = true) // Also written by LastLoginWriteBehind without a version bump
+    private Instant lastLoginAt;
+
+    /**
+     * Optimistic lock version, not bumped by password rehashes and logins.
+     */
+    @Version
+    private Long version;
 
     // Constructors
     public User() {}
@@ -60,7 +91,7 @@ public class User {
         this.email = email;
         this.password = password;
         this.name = name;
-        this.createdAt = new Date();
+        this.createdAt = Instant.ofEpochMilli(System.currentTimeMillis());
     }
 
     // Getters and Setters
@@ -88,9 +119,12 @@ public class User {
     public boolean isActive() { return isActive; }
     public void setActive(boolean active) { isActive = active; }
 
-    public Date getCreatedAt() { return createdAt; }
-    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getLastLoginAt() { return lastLoginAt; }
+    public void setLastLoginAt(Instant lastLoginAt) { this.lastLoginAt = lastLoginAt; }
 
-    public Date getLastLoginAt() { return lastLoginAt; }
-    public void setLastLoginAt(Date lastLoginAt) { this.lastLoginAt = lastLoginAt; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
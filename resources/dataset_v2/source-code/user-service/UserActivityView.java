@@ -0,0 +1,12 @@
+package com.ecommerce.userservice.model;
+
+import java.time.Instant;
+
+/**
+ * Projection of User for analytics: identity and activity timestamps only.
+ */
+public interface UserActivityView {
+    Long getId();
+    Instant getCreatedAt();
+    Instant getLastLoginAt();
+}
@@ -0,0 +1,619 @@
+package com.ecommerce.userservice.cache;
+
+import com.ecommerce.userservice.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.SetParams;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Two-tier cache for user profiles: a bounded in-process near cache in front of the shared
+ * user:{id} Redis keys, invalidated on every node over Redis pub/sub.
+ * Entries near expiry are refreshed early (XFetch), Redis TTLs are jittered, and unknown
+ * ids are cached as short-lived tombstones.
+ */
+@Component
+public class UserCache {
+
+    private static final Logger log = LoggerFactory.getLogger(UserCache.class);
+
+    private static final String KEY_PREFIX = "user:";
+    /**
+     * Carries the id of every changed user; also followed by ReadYourWritesTracker.
+     */
+    public static final String INVALIDATION_CHANNEL = "user-cache:invalidate";
+    private static final String LOCK_PREFIX = "lock:user:";
+    // Set by clearTombstone; while it exists no tombstone is stored for the id
+    private static final String CREATED_PREFIX = "created:user:";
+    // Single zero byte, never a valid UserCodec version
+    private static final byte[] TOMBSTONE = {0};
+    // Internal marker for "known not to exist", never returned to callers
+    private static final User ABSENT = new User();
+    // Replaces the entry unless it holds a newer entity version (bytes 11-18, see UserCodec)
+    private static final byte[] PUT_IF_NEWER_SCRIPT = (
+            "local current = redis.call('GETRANGE', KEYS[1], 0, 17) "
+            + "if string.len(current) == 18 and string.byte(current, 1) == string.byte(ARGV[1], 1) then "
+            + "  for i = 11, 18 do "
+            + "    local old, new = string.byte(current, i), string.byte(ARGV[1], i) "
+            + "    if old > new then return 0 end "
+            + "    if old < new then break end "
+            + "  end "
+            + "end "
+            + "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2]) "
+            + "return 1").getBytes(StandardCharsets.UTF_8);
+
+    // Skips the tombstone if the id was just created or already holds a profile
+    private static final byte[] STORE_TOMBSTONE_SCRIPT = (
+            "if redis.call('EXISTS', KEYS[2]) == 1 then return 0 end "
+            + "if redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2], 'NX') then return 1 end "
+            + "return 0").getBytes(StandardCharsets.UTF_8);
+
+    private static final String RELEASE_LOCK_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
+    @Autowired
+    private JedisPool redisPool;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${user.cache.ttl-seconds:2700}")
+    private int ttlSeconds;
+
+    /**
+     * Random spread applied to each Redis TTL, as a percentage of ttl-seconds.
+     */
+    @Value("${user.cache.ttl-jitter-percent:10}")
+    private int ttlJitterPercent;
+
+    @Value("${user.cache.early-refresh.enabled:true}")
+    private boolean earlyRefreshEnabled;
+
+    /**
+     * XFetch beta. Values above 1 favour earlier refreshes, below 1 later ones.
+     */
+    @Value("${user.cache.early-refresh.beta:1.0}")
+    private double earlyRefreshBeta;
+
+    @Value("${user.cache.early-refresh.threads:2}")
+    private int earlyRefreshThreads;
+
+    @Value("${user.cache.early-refresh.queue-size:1000}")
+    private int earlyRefreshQueueSize;
+
+    @Value("${user.cache.tombstone.ttl-seconds:60}")
+    private int tombstoneTtlSeconds;
+
+    /**
+     * Separate from the near cache, so probing random ids cannot evict real profiles.
+     */
+    @Value("${user.cache.tombstone.max-size:50000}")
+    private long tombstoneMaxSize;
+
+    @Value("${user.cache.near.max-size:10000}")
+    private long nearCacheMaxSize;
+
+    /**
+     * Upper bound on how long a node may serve a local copy, in case an invalidation was lost.
+     */
+    @Value("${user.cache.near.ttl-seconds:60}")
+    private long nearCacheTtlSeconds;
+
+    /**
+     * Coalesces misses across nodes with a short-lived Redis lock per user id.
+     */
+    @Value("${user.cache.load-lock.enabled:false}")
+    private boolean loadLockEnabled;
+
+    @Value("${user.cache.load-lock.ttl-ms:3000}")
+    private long loadLockTtlMs;
+
+    @Value("${user.cache.load-lock.poll-ms:25}")
+    private long loadLockPollMs;
+
+    @Value("${user.cache.load-lock.poll-attempts:8}")
+    private int loadLockPollAttempts;
+
+    private Cache<String, Entry> nearCache;
+    private Cache<String, Boolean> tombstones;
+    private Counter tombstoneHits;
+    private Counter tombstoneMisses;
+    private SingleFlight<String, User> loads;
+    private Counter remoteLoads;
+    private Counter earlyRefreshes;
+    private ExecutorService refreshExecutor;
+
+    // Moving average of database load time, the XFetch recompute cost
+    private volatile double loadMillisEstimate = 5.0;
+
+    @PostConstruct
+    public void init() {
+        nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(nearCacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "user.near-cache");
+
+        tombstones = Caffeine.newBuilder()
+                .maximumSize(tombstoneMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(tombstoneTtlSeconds))
+                .build();
+        tombstoneHits = tombstoneCounter("hit");
+        tombstoneMisses = tombstoneCounter("miss");
+
+        loads = new SingleFlight<>(
+                loadCounter("executed"),
+                loadCounter("coalesced"));
+        remoteLoads = loadCounter("remote");
+        earlyRefreshes = loadCounter("early-refresh");
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                earlyRefreshThreads, earlyRefreshThreads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(earlyRefreshQueueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "user-cache-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        refreshExecutor = executor;
+
+        invalidationBus.subscribe(INVALIDATION_CHANNEL, this::invalidateLocal, this::invalidateAllLocal);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Looks up a user in the near cache, then in Redis.
+     * Returned instances are shared between threads and must not be mutated.
+     * @return Cached user or null on a miss in both tiers
+     */
+    public User get(String userId) {
+        User user = lookup(userId, null);
+        return user != ABSENT ? user : null;
+    }
+
+    /**
+     * Returns the cached user, or loads it on a miss and populates both tiers.
+     * Concurrent misses for the same id on this node share a single load.
+     * @param loader Database lookup, may return null for unknown ids
+     */
+    public User getOrLoad(String userId, Function<String, User> loader) {
+        User user = lookup(userId, loader);
+        if (user == null) {
+            user = loads.execute(userId, () -> {
+                // Filled by a load that finished just before this one started
+                Entry cached = nearCache.getIfPresent(userId);
+                if (cached != null) {
+                    return cached.user;
+                }
+                return loadLockEnabled ? loadWithLock(userId, loader) : loadAndStore(userId, loader);
+            });
+        }
+        return user != ABSENT ? user : null;
+    }
+
+    /**
+     * Batch variant of getOrLoad: one MGET, one loader call and one write-back pipeline.
+     * @param loader Bulk database lookup returning found users keyed by id
+     * @return Found users keyed by id, in request order; unknown ids are omitted
+     */
+    public Map<String, User> getAllOrLoad(Collection<String> userIds,
+                                          Function<List<String>, Map<String, User>> loader) {
+        Map<String, User> found = new LinkedHashMap<>();
+        List<String> redisMisses = new ArrayList<>();
+        for (String userId : userIds) {
+            if (found.containsKey(userId)) {
+                continue;
+            }
+            Entry entry = nearCache.getIfPresent(userId);
+            if (entry != null) {
+                found.put(userId, entry.user);
+            } else if (tombstones.getIfPresent(userId) != null) {
+                tombstoneHits.increment();
+                found.put(userId, ABSENT);
+            } else {
+                // Placeholder keeps request order for ids resolved later
+                found.put(userId, null);
+                redisMisses.add(userId);
+            }
+        }
+
+        List<String> misses = redisMisses.isEmpty() ? redisMisses : readAll(redisMisses, found);
+        if (!misses.isEmpty()) {
+            Map<String, User> loaded = loader.apply(misses);
+            storeAll(misses, loaded, found);
+        }
+
+        found.values().removeIf(user -> user == null || user == ABSENT);
+        return found;
+    }
+
+    /**
+     * Stores a user in both tiers. Redis population is best effort, and does not replace a
+     * newer version written through by a concurrent update.
+     */
+    public void put(String userId, User user) {
+        int ttl = jitteredTtlSeconds();
+        nearCache.put(userId, new Entry(user, System.currentTimeMillis() + ttl * 1000L));
+        try (Jedis redis = redisPool.getResource()) {
+            redis.eval(PUT_IF_NEWER_SCRIPT, Collections.singletonList(key(userId)), putIfNewerArgs(user, ttl));
+        } catch (JedisException e) {
+            // Cache population is best effort
+        }
+    }
+
+    /**
+     * Writes an updated profile through to Redis and drops near-cache copies on every node.
+     * Redis keeps the higher entity version of concurrent writes. Falls back to invalidation
+     * if Redis fails.
+     * @param user Detached, password-less copy of the committed entity
+     */
+    public void update(String userId, User user) {
+        try {
+            try (Jedis redis = redisPool.getResource()) {
+                redis.eval(PUT_IF_NEWER_SCRIPT, Collections.singletonList(key(userId)),
+                        putIfNewerArgs(user, jitteredTtlSeconds()));
+            }
+            invalidateLocal(userId);
+            invalidationBus.publish(INVALIDATION_CHANNEL, userId);
+        } catch (JedisException e) {
+            log.warn("Cache write-through failed for user {}, invalidating instead", userId, e);
+            try {
+                invalidate(userId);
+            } catch (JedisException retry) {
+                log.warn("Could not invalidate cached user {}; other nodes may serve it until it expires", userId, retry);
+            }
+        }
+    }
+
+    /**
+     * Removes a user, or a tombstone for its id, from Redis and from the near cache of every node.
+     */
+    public void invalidate(String userId) {
+        invalidateLocal(userId);
+        try (Jedis redis = redisPool.getResource()) {
+            redis.del(KEY_PREFIX + userId);
+        }
+        invalidationBus.publish(INVALIDATION_CHANNEL, userId);
+    }
+
+    /**
+     * Clears a tombstone for a newly created id on every node and blocks new ones for it.
+     * Redis failures are ignored; the tombstone expires on its own.
+     */
+    public void clearTombstone(String userId) {
+        invalidateLocal(userId);
+        try (Jedis redis = redisPool.getResource()) {
+            Pipeline pipeline = redis.pipelined();
+            pipeline.setex(createdKey(userId), tombstoneTtlSeconds, TOMBSTONE);
+            pipeline.del(key(userId));
+            pipeline.sync();
+            invalidationBus.publish(INVALIDATION_CHANNEL, userId);
+        } catch (JedisException e) {
+            log.warn("Could not clear cache tombstone for new user {}", userId, e);
+        }
+    }
+
+    /**
+     * Reads the near cache, then Redis. With a loader, hits close to expiry are refreshed
+     * in the background.
+     */
+    private User lookup(String userId, Function<String, User> loader) {
+        Entry entry = nearCache.getIfPresent(userId);
+        if (entry != null) {
+            maybeRefreshEarly(userId, entry, loader);
+            return entry.user;
+        }
+        if (tombstones.getIfPresent(userId) != null) {
+            tombstoneHits.increment();
+            return ABSENT;
+        }
+
+        byte[] key = key(userId);
+        byte[] cachedUser = null;
+        long ttlMillis = -1;
+        try (Jedis redis = redisPool.getResource()) {
+            Pipeline pipeline = redis.pipelined();
+            Response<byte[]> value = pipeline.get(key);
+            Response<Long> ttl = pipeline.pttl(key);
+            pipeline.sync();
+            cachedUser = value.get();
+            ttlMillis = ttl.get();
+        } catch (JedisException e) {
+            // Pool exhausted or Redis unavailable - treat as a miss
+        }
+
+        if (cachedUser == null) {
+            return null;
+        }
+        if (Arrays.equals(cachedUser, TOMBSTONE)) {
+            tombstones.put(userId, Boolean.TRUE);
+            tombstoneHits.increment();
+            return ABSENT;
+        }
+        User user = decode(cachedUser);
+        if (user == null) {
+            return null;
+        }
+        // Negative PTTL means no expiry; never refresh those early
+        long expiresAt = ttlMillis >= 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+        entry = new Entry(user, expiresAt);
+        nearCache.put(userId, entry);
+        maybeRefreshEarly(userId, entry, loader);
+        return user;
+    }
+
+    // XFetch: refresh when -delta * beta * ln(rand) reaches the remaining lifetime
+    private void maybeRefreshEarly(String userId, Entry entry, Function<String, User> loader) {
+        if (loader == null || !earlyRefreshEnabled) {
+            return;
+        }
+        long remainingMillis = entry.expiresAtMillis - System.currentTimeMillis();
+        double gap = -loadMillisEstimate * earlyRefreshBeta * Math.log(ThreadLocalRandom.current().nextDouble());
+        if (gap < remainingMillis) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                earlyRefreshes.increment();
+                loads.execute(userId, () -> loadAndStore(userId, loader));
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down - the entry will simply expire
+        }
+    }
+
+    private int jitteredTtlSeconds() {
+        int spread = ttlSeconds * ttlJitterPercent / 100;
+        if (spread <= 0) {
+            return ttlSeconds;
+        }
+        return ttlSeconds - spread + ThreadLocalRandom.current().nextInt(2 * spread + 1);
+    }
+
+    private User loadAndStore(String userId, Function<String, User> loader) {
+        long start = System.nanoTime();
+        User user = loader.apply(userId);
+        double elapsedMillis = (System.nanoTime() - start) / 1_000_000.0;
+        loadMillisEstimate = loadMillisEstimate * 0.9 + elapsedMillis * 0.1;
+        if (user == null) {
+            storeTombstone(userId);
+            return ABSENT;
+        }
+        put(userId, user);
+        return user;
+    }
+
+    // Fills found from one MGET and returns the ids Redis did not have
+    private List<String> readAll(List<String> userIds, Map<String, User> found) {
+        byte[][] keys = new byte[userIds.size()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(userIds.get(i));
+        }
+        List<byte[]> values;
+        try (Jedis redis = redisPool.getResource()) {
+            values = redis.mget(keys);
+        } catch (JedisException e) {
+            return userIds;
+        }
+
+        List<String> misses = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            String userId = userIds.get(i);
+            byte[] value = values.get(i);
+            if (value != null && Arrays.equals(value, TOMBSTONE)) {
+                tombstones.put(userId, Boolean.TRUE);
+                tombstoneHits.increment();
+                found.put(userId, ABSENT);
+                continue;
+            }
+            User user = value != null ? decode(value) : null;
+            if (user == null) {
+                misses.add(userId);
+                continue;
+            }
+            // Remaining Redis TTL is not fetched in batch reads; assume a fresh entry
+            nearCache.put(userId, new Entry(user, System.currentTimeMillis() + jitteredTtlSeconds() * 1000L));
+            found.put(userId, user);
+        }
+        return misses;
+    }
+
+    private void storeAll(List<String> userIds, Map<String, User> loaded, Map<String, User> found) {
+        Map<String, Response<Object>> storedTombstones = new LinkedHashMap<>();
+        try (Jedis redis = redisPool.getResource()) {
+            Pipeline pipeline = redis.pipelined();
+            for (String userId : userIds) {
+                User user = loaded.get(userId);
+                if (user == null) {
+                    tombstoneMisses.increment();
+                    found.put(userId, ABSENT);
+                    storedTombstones.put(userId, pipeline.eval(STORE_TOMBSTONE_SCRIPT,
+                            Arrays.asList(key(userId), createdKey(userId)), tombstoneArgs()));
+                } else {
+                    int ttl = jitteredTtlSeconds();
+                    nearCache.put(userId, new Entry(user, System.currentTimeMillis() + ttl * 1000L));
+                    found.put(userId, user);
+                    // A write-through may have stored a newer version since the loader read this one
+                    pipeline.eval(PUT_IF_NEWER_SCRIPT, Collections.singletonList(key(userId)), putIfNewerArgs(user, ttl));
+                }
+            }
+            pipeline.sync();
+            storedTombstones.forEach((userId, stored) -> {
+                if (Long.valueOf(1).equals(stored.get())) {
+                    tombstones.put(userId, Boolean.TRUE);
+                }
+            });
+        } catch (JedisException e) {
+            // Cache population is best effort
+            for (String userId : userIds) {
+                User user = loaded.get(userId);
+                found.put(userId, user != null ? user : ABSENT);
+            }
+        }
+    }
+
+    // Profiles are only ever stored through PUT_IF_NEWER_SCRIPT
+    private static List<byte[]> putIfNewerArgs(User user, int ttlSeconds) {
+        return Arrays.asList(UserCodec.encode(user), String.valueOf(ttlSeconds).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<byte[]> tombstoneArgs() {
+        return Arrays.asList(TOMBSTONE, String.valueOf(tombstoneTtlSeconds).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Cached locally only if Redis accepted it, so a concurrent registration is not hidden
+    private void storeTombstone(String userId) {
+        tombstoneMisses.increment();
+        nearCache.invalidate(userId);
+        try (Jedis redis = redisPool.getResource()) {
+            Object stored = redis.eval(STORE_TOMBSTONE_SCRIPT,
+                    Arrays.asList(key(userId), createdKey(userId)), tombstoneArgs());
+            if (Long.valueOf(1).equals(stored)) {
+                tombstones.put(userId, Boolean.TRUE);
+            }
+        } catch (JedisException e) {
+            // Cache population is best effort
+        }
+    }
+
+    private User loadWithLock(String userId, Function<String, User> loader) {
+        String lockKey = LOCK_PREFIX + userId;
+        String token = UUID.randomUUID().toString();
+        boolean acquired;
+        try (Jedis redis = redisPool.getResource()) {
+            acquired = "OK".equals(redis.set(lockKey, token, SetParams.setParams().nx().px(loadLockTtlMs)));
+        } catch (JedisException e) {
+            // Without Redis there is nothing to coordinate on
+            return loadAndStore(userId, loader);
+        }
+
+        if (!acquired) {
+            User user = awaitRemoteLoad(userId);
+            if (user != null) {
+                remoteLoads.increment();
+                return user;
+            }
+            // Lock holder is slow or found nothing - load locally
+            return loadAndStore(userId, loader);
+        }
+
+        try {
+            return loadAndStore(userId, loader);
+        } finally {
+            try (Jedis redis = redisPool.getResource()) {
+                redis.eval(RELEASE_LOCK_SCRIPT, Collections.singletonList(lockKey), Collections.singletonList(token));
+            } catch (JedisException e) {
+                // Lock expires on its own
+            }
+        }
+    }
+
+    private User awaitRemoteLoad(String userId) {
+        for (int attempt = 0; attempt < loadLockPollAttempts; attempt++) {
+            try {
+                Thread.sleep(loadLockPollMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            User user = lookup(userId, null);
+            if (user != null) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    private Counter tombstoneCounter(String result) {
+        return Counter.builder("user.cache.tombstones")
+                .description("Lookups answered by a tombstone (hit) and database misses that created one (miss)")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter loadCounter(String outcome) {
+        return Counter.builder("user.cache.loads")
+                .description("Profile cache miss loads by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private void invalidateLocal(String userId) {
+        nearCache.invalidate(userId);
+        tombstones.invalidate(userId);
+    }
+
+    private void invalidateAllLocal() {
+        nearCache.invalidateAll();
+        tombstones.invalidateAll();
+    }
+
+    private static final class Entry {
+        final User user;
+        final long expiresAtMillis;
+
+        Entry(User user, long expiresAtMillis) {
+            this.user = user;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private static byte[] key(String userId) {
+        return (KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] createdKey(String userId) {
+        return (CREATED_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Unreadable entries (older format, truncated write) are treated as misses
+    private static User decode(byte[] data) {
+        try {
+            return UserCodec.decode(data);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.ecommerce.userservice.cache;
+
+import com.ecommerce.userservice.model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Compact binary codec for cached User profiles, without the password hash.
+ * Layout: version byte, flags byte, id and entity version (8 bytes each, at fixed offsets
+ * for the Redis scripts), the string fields as length-prefixed UTF-8, then createdAt and
+ * lastLoginAt as epoch millis.
+ */
+public final class UserCodec {
+
+    static final byte VERSION = 2;
+
+    private static final int FLAG_ACTIVE = 1;
+    private static final int FLAG_HAS_ID = 1 << 1;
+    private static final int FLAG_HAS_VERSION = 1 << 2;
+    private static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+
+    private UserCodec() {}
+
+    public static byte[] encode(User user) {
+        String email = user.getEmail();
+        String name = user.getName();
+        String phoneNumber = user.getPhoneNumber();
+        String address = user.getAddress();
+        String avatarUrl = user.getAvatarUrl();
+
+        int size = 2 + 8 + 8 + 8 + 8
+                + stringSize(email) + stringSize(name) + stringSize(phoneNumber)
+                + stringSize(address) + stringSize(avatarUrl);
+        byte[] buf = new byte[size];
+
+        int flags = (user.isActive() ? FLAG_ACTIVE : 0)
+                | (user.getId() != null ? FLAG_HAS_ID : 0)
+                | (user.getVersion() != null ? FLAG_HAS_VERSION : 0);
+        buf[0] = VERSION;
+        buf[1] = (byte) flags;
+        int pos = writeLong(buf, 2, user.getId() != null ? user.getId() : 0L);
+        // Big-endian and never negative, so comparing the bytes orders versions
+        pos = writeLong(buf, pos, user.getVersion() != null ? user.getVersion() : 0L);
+        pos = writeString(buf, pos, email);
+        pos = writeString(buf, pos, name);
+        pos = writeString(buf, pos, phoneNumber);
+        pos = writeString(buf, pos, address);
+        pos = writeString(buf, pos, avatarUrl);
+        pos = writeLong(buf, pos, toMillis(user.getCreatedAt()));
+        writeLong(buf, pos, toMillis(user.getLastLoginAt()));
+        return buf;
+    }
+
+    /**
+     * Decodes a cached profile.
+     * @return Decoded user, or null if the entry was written by an unknown format version
+     */
+    public static User decode(byte[] buf) {
+        if (buf.length < 2 || buf[0] != VERSION) {
+            return null;
+        }
+        Reader in = new Reader(buf, 2);
+        int flags = buf[1];
+
+        User user = new User();
+        long id = in.readLong();
+        if ((flags & FLAG_HAS_ID) != 0) {
+            user.setId(id);
+        }
+        long version = in.readLong();
+        if ((flags & FLAG_HAS_VERSION) != 0) {
+            user.setVersion(version);
+        }
+        user.setActive((flags & FLAG_ACTIVE) != 0);
+        user.setEmail(in.readString());
+        user.setName(in.readString());
+        user.setPhoneNumber(in.readString());
+        user.setAddress(in.readString());
+        user.setAvatarUrl(in.readString());
+        user.setCreatedAt(toInstant(in.readLong()));
+        user.setLastLoginAt(toInstant(in.readLong()));
+        return user;
+    }
+
+    // Strings are prefixed with a varint of (UTF-8 length + 1); 0 marks null
+    private static int stringSize(String s) {
+        if (s == null) {
+            return 1;
+        }
+        int len = utf8Length(s);
+        return varintSize(len + 1) + len;
+    }
+
+    private static int writeString(byte[] buf, int pos, String s) {
+        if (s == null) {
+            buf[pos] = 0;
+            return pos + 1;
+        }
+        pos = writeVarint(buf, pos, utf8Length(s) + 1);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, encoded as '?' like String.getBytes does
+                buf[pos++] = (byte) '?';
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    private static int utf8Length(String s) {
+        int len = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                len += 1;
+            } else if (c < 0x800) {
+                len += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                len += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                len += 1;
+            } else {
+                len += 3;
+            }
+        }
+        return len;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarint(byte[] buf, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static int writeLong(byte[] buf, int pos, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[pos++] = (byte) (value >>> shift);
+        }
+        return pos;
+    }
+
+    private static long toMillis(Instant instant) {
+        return instant != null ? instant.toEpochMilli() : NULL_TIMESTAMP;
+    }
+
+    private static Instant toInstant(long millis) {
+        return millis != NULL_TIMESTAMP ? Instant.ofEpochMilli(millis) : null;
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buf[pos++] & 0xFF);
+            }
+            return value;
+        }
+
+        int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        String readString() {
+            int len = readVarint() - 1;
+            if (len < 0) {
+                return null;
+            }
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+    }
+}
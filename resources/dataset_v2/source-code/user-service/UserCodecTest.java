@@ -0,0 +1,106 @@
+package com.ecommerce.userservice.cache;
+
+import com.ecommerce.userservice.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserCodecTest {
+
+    @Test
+    void roundTripsEveryField() {
+        User user = new User();
+        user.setId(42L);
+        user.setVersion(7L);
+        user.setEmail("ada@example.com");
+        user.setName("Ada Lovelace");
+        user.setPhoneNumber("+44 20 7946 0000");
+        user.setAddress("12 St James's Square, London");
+        user.setAvatarUrl("https://cdn.example.com/avatars/42.png");
+        user.setActive(true);
+        user.setCreatedAt(Instant.ofEpochMilli(1_700_000_000_123L));
+        user.setLastLoginAt(Instant.ofEpochMilli(1_700_000_500_456L));
+
+        assertSameProfile(user, UserCodec.decode(UserCodec.encode(user)));
+    }
+
+    @Test
+    void roundTripsNullsAndInactiveUsers() {
+        User user = new User();
+        user.setEmail("new@example.com");
+        user.setActive(false);
+        user.setCreatedAt(null);
+
+        User decoded = UserCodec.decode(UserCodec.encode(user));
+
+        assertNull(decoded.getId());
+        assertNull(decoded.getVersion());
+        assertNull(decoded.getName());
+        assertNull(decoded.getPhoneNumber());
+        assertNull(decoded.getCreatedAt());
+        assertNull(decoded.getLastLoginAt());
+        assertFalse(decoded.isActive());
+        assertEquals("new@example.com", decoded.getEmail());
+    }
+
+    @Test
+    void encodesStringsAsUtf8() {
+        User user = new User();
+        // 2-, 3- and 4-byte sequences, and a name long enough for a two-byte length prefix
+        user.setName("Zoë 東京 😀 " + repeat("x", 200));
+        user.setAddress("broken \uD800 surrogate");
+
+        User decoded = UserCodec.decode(UserCodec.encode(user));
+
+        assertEquals(user.getName(), decoded.getName());
+        assertEquals("broken ? surrogate", decoded.getAddress());
+    }
+
+    @Test
+    void writesTheEntityVersionAtTheFixedOffset() {
+        User user = new User();
+        user.setId(1L);
+        user.setVersion(0x0102030405L);
+
+        byte[] encoded = UserCodec.encode(user);
+
+        assertEquals(UserCodec.VERSION, encoded[0]);
+        assertEquals(0x0102030405L, ByteBuffer.wrap(encoded, 10, 8).getLong());
+    }
+
+    @Test
+    void ignoresEntriesOfAnotherFormatVersion() {
+        byte[] encoded = UserCodec.encode(new User());
+        encoded[0] = (byte) (UserCodec.VERSION - 1);
+
+        assertNull(UserCodec.decode(encoded));
+        assertNull(UserCodec.decode(new byte[0]));
+    }
+
+    private static void assertSameProfile(User expected, User actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getEmail(), actual.getEmail());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getPhoneNumber(), actual.getPhoneNumber());
+        assertEquals(expected.getAddress(), actual.getAddress());
+        assertEquals(expected.getAvatarUrl(), actual.getAvatarUrl());
+        assertTrue(actual.isActive());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.getLastLoginAt(), actual.getLastLoginAt());
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
@@ -1,11 +1,20 @@
 package com.ecommerce.userservice.controller;
 
+import com.ecommerce.userservice.exception.ServiceBusyException;
+import com.ecommerce.userservice.exception.UpdateConflictException;
 import com.ecommerce.userservice.model.User;
+import com.ecommerce.userservice.service.UserImportService;
 import com.ecommerce.userservice.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.Set;
+
 /**
  * REST controller for user management operations.
  * Handles user registration, authentication, and profile management.
@@ -18,6 +27,9 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserImportService userImportService;
+
     /**
      * Registers a new user in the system.
      * @param user The user registration data
@@ -31,6 +43,30 @@ public class UserController {
             String jwtToken = userService.generateToken(createdUser);
             
             return ResponseEntity.ok().body(new AuthResponse(createdUser, jwtToken));
+        } catch (ServiceBusyException e) {
+            return serviceBusy(e);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Bulk-registers users from a newline-delimited JSON stream, for tenant migrations.
+     * Requires the configured import key in the X-Import-Key header.
+     * @return Counts of imported and rejected rows with per-row errors; if hashing capacity
+     *         ran out, the line to resume from
+     */
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<?> importUsers(
+        @RequestHeader(value = "X-Import-Key", required = false) String importKey,
+        HttpServletRequest request
+    ) {
+        if (!userImportService.isAuthorized(importKey)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("Invalid import key"));
+        }
+        
+        try {
+            return ResponseEntity.ok(userImportService.importUsers(request.getInputStream()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
         }
@@ -39,7 +75,7 @@ public class UserController {
     /**
      * Authenticates user and returns JWT token.
      * @param loginRequest Contains email and password
-     * @return JWT token with 3-hour expiry
+     * @return JWT token with 3-hour expiry, or 503 when password hashing is saturated
      */
     @PostMapping("/login")
     public ResponseEntity<?> loginUser(@RequestBody LoginRequest loginRequest) {
@@ -55,18 +91,43 @@ public class UserController {
             }
             
             return ResponseEntity.unauthorized().build();
+        } catch (ServiceBusyException e) {
+            return serviceBusy(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
         }
     }
 
+    /**
+     * Logs the user out by revoking the JWT token on every instance until it expires.
+     * Requires valid JWT token in Authorization header.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logoutUser(@RequestHeader("Authorization") String token) {
+        try {
+            userService.revokeToken(token);
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ErrorResponse("Invalid token"));
+        }
+    }
+
     /**
      * Retrieves user profile information.
      * Requires valid JWT token in Authorization header.
+     * Fields carried in the token (id, email, name) are served from its claims, as of issue.
+     * @param fields Optional comma-separated field selection, e.g. fields=id,name
      */
     @GetMapping("/profile")
-    public ResponseEntity<?> getUserProfile(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<?> getUserProfile(
+        @RequestHeader("Authorization") String token,
+        @RequestParam(value = "fields", required = false) Set<String> fields
+    ) {
         try {
+            if (fields != null && !fields.isEmpty() && UserService.TOKEN_PROFILE_FIELDS.containsAll(fields)) {
+                return ResponseEntity.ok(userService.getTokenProfile(token, fields));
+            }
+            
             String userId = userService.extractUserIdFromToken(token);
             User user = userService.getUserById(userId);
             
@@ -77,9 +138,31 @@ public class UserController {
         }
     }
 
+    /**
+     * Retrieves id, name and avatar of several users in one call.
+     * For internal services; requires the service key in the X-Service-Key header.
+     * Unknown IDs are omitted.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> getUsersBatch(
+        @RequestHeader(value = "X-Service-Key", required = false) String serviceKey,
+        @RequestBody List<String> userIds
+    ) {
+        if (!userService.isServiceAuthorized(serviceKey)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("Invalid service key"));
+        }
+        
+        try {
+            return ResponseEntity.ok(userService.getUsersByIds(userIds));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
     /**
      * Updates user profile information.
      * Supports partial updates - only provided fields are updated.
+     * Returns 409 Conflict if the sent version is outdated or a concurrent update won.
      */
     @PutMapping("/profile")
     public ResponseEntity<?> updateProfile(
@@ -88,14 +171,21 @@ public class UserController {
     ) {
         try {
             String userId = userService.extractUserIdFromToken(token);
+            // Written through to the cache by the service
             User updatedUser = userService.updateUser(userId, userUpdate);
             
-            // Invalidate Redis cache after profile update
-            userService.invalidateUserCache(userId);
-            
             return ResponseEntity.ok(updatedUser);
+        } catch (UpdateConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
         }
     }
+
+    // Saturated password hashing: ask the client to back off
+    private ResponseEntity<?> serviceBusy(ServiceBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResponse(e.getMessage()));
+    }
 }
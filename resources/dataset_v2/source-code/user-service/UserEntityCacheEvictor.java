@@ -0,0 +1,139 @@
+package com.ecommerce.userservice.repository;
+
+import com.ecommerce.userservice.cache.InvalidationBus;
+import com.ecommerce.userservice.cache.UserCache;
+import com.ecommerce.userservice.model.User;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.exceptions.JedisException;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collection;
+import java.util.StringJoiner;
+
+/**
+ * Evicts User entries from the Hibernate second-level and query caches.
+ * Covers what Hibernate does not see: JDBC writes and writes on other nodes.
+ * Broadcasts fall back to this node only if the bus is unavailable.
+ * Does nothing unless user.jpa.second-level-cache.enabled is set.
+ */
+@Component
+public class UserEntityCacheEvictor {
+
+    private static final Logger log = LoggerFactory.getLogger(UserEntityCacheEvictor.class);
+
+    public static final String QUERY_INVALIDATION_CHANNEL = "user-queries:invalidate";
+
+    public static final String ENTITY_INVALIDATION_CHANNEL = "user-entities:invalidate";
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Value("${user.jpa.second-level-cache.enabled:false}")
+    private boolean enabled;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            invalidationBus.subscribe(UserCache.INVALIDATION_CHANNEL, this::onRemoteWrite, this::evictAll);
+            invalidationBus.subscribe(ENTITY_INVALIDATION_CHANNEL, this::onRemoteEvict, this::evictEntities);
+            invalidationBus.subscribe(QUERY_INVALIDATION_CHANNEL, message -> evictQueries(), this::evictQueries);
+        }
+    }
+
+    /**
+     * Evicts one user on this node.
+     */
+    public void evict(Long userId) {
+        if (enabled) {
+            entityManagerFactory.getCache().evict(User.class, userId);
+        }
+    }
+
+    public void evict(Collection<Long> userIds) {
+        if (enabled) {
+            for (Long userId : userIds) {
+                entityManagerFactory.getCache().evict(User.class, userId);
+            }
+        }
+    }
+
+    /**
+     * Evicts users on every node, after a JDBC update of their rows.
+     */
+    public void evictOnAllNodes(Collection<Long> userIds) {
+        if (!enabled || userIds.isEmpty()) {
+            return;
+        }
+        StringJoiner message = new StringJoiner("\n");
+        for (Long userId : userIds) {
+            message.add(userId.toString());
+        }
+        try {
+            invalidationBus.publish(ENTITY_INVALIDATION_CHANNEL, message.toString());
+        } catch (JedisException e) {
+            log.warn("Publishing entity cache invalidation failed", e);
+            evict(userIds);
+        }
+    }
+
+    /**
+     * Drops cached query results on this node, after rows were added outside of JPA.
+     */
+    public void evictQueries() {
+        if (enabled) {
+            entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+        }
+    }
+
+    /**
+     * Drops cached query results on every node, e.g. after a bulk import added rows.
+     */
+    public void evictQueriesOnAllNodes() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            invalidationBus.publish(QUERY_INVALIDATION_CHANNEL, "");
+        } catch (JedisException e) {
+            log.warn("Publishing query cache invalidation failed", e);
+            evictQueries();
+        }
+    }
+
+    // Invalidations may have been missed while the bus was disconnected
+    private void evictAll() {
+        evictEntities();
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictNaturalIdData(User.class);
+        evictQueries();
+    }
+
+    private void evictEntities() {
+        entityManagerFactory.getCache().evict(User.class);
+    }
+
+    // Natural-id entries stay valid: emails never change and users are only soft-deleted.
+    // Query results are kept; they hold ids only and expire after the query TTL.
+    private void onRemoteWrite(String userId) {
+        try {
+            evict(Long.valueOf(userId));
+        } catch (NumberFormatException e) {
+            // Not a user id; nothing to evict
+        }
+    }
+
+    // Messages carry one or more newline-separated user ids
+    private void onRemoteEvict(String userIds) {
+        for (String userId : userIds.split("\n")) {
+            onRemoteWrite(userId);
+        }
+    }
+}
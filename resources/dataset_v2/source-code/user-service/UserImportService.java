@@ -0,0 +1,400 @@
+package com.ecommerce.userservice.service;
+
+import com.ecommerce.userservice.cache.EmailBloomFilter;
+import com.ecommerce.userservice.exception.ServiceBusyException;
+import com.ecommerce.userservice.repository.RecentActiveUsersRollup;
+import com.ecommerce.userservice.repository.UserEntityCacheEvictor;
+import com.ecommerce.userservice.security.PasswordHasher;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bulk user import for tenant migrations.
+ * Reads newline-delimited JSON in chunks: duplicates are dropped, passwords hashed on the
+ * PasswordHasher pool and rows written with one INSERT per chunk, in bounded memory.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    // One statement per chunk; rows registered concurrently are skipped and not returned
+    private static final String INSERT_SQL =
+            "INSERT INTO users (id, email, password, name, phone_number, address, avatar_url, is_active, created_at) "
+            + "SELECT id, email, password, name, phone_number, address, avatar_url, true, ? "
+            + "FROM unnest(?, ?, ?, ?, ?, ?, ?) AS r(id, email, password, name, phone_number, address, avatar_url) "
+            + "ON CONFLICT (email) DO NOTHING RETURNING email";
+
+    // Each nextval reserves the block of ids ending at the returned value (pooled optimizer)
+    private static final String ALLOCATE_ID_BLOCKS_SQL = "SELECT nextval('users_id_seq') FROM generate_series(1, ?)";
+
+    // User.id allocationSize, the users_id_seq increment
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final String EXISTING_EMAILS_SQL = "SELECT email FROM users WHERE email = ANY(?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private EmailBloomFilter emailFilter;
+
+    @Autowired
+    private RecentActiveUsersRollup recentActiveUsers;
+
+    @Autowired
+    private UserEntityCacheEvictor entityCacheEvictor;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Shared secret required in the X-Import-Key header. Imports are disabled when empty.
+     */
+    @Value("${user.import.api-key:}")
+    private String apiKey;
+
+    @Value("${user.import.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * Hashes kept in flight per import. When 0, half the CPUs, leaving room for logins.
+     */
+    @Value("${user.import.hash-parallelism:0}")
+    private int hashParallelism;
+
+    @Value("${user.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    private ObjectReader rowReader;
+    private Counter importedRows;
+    private Counter rejectedRows;
+
+    @PostConstruct
+    public void init() {
+        rowReader = objectMapper.readerFor(ImportRow.class);
+        if (hashParallelism <= 0) {
+            hashParallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+        importedRows = Counter.builder("user.import.rows").tag("result", "imported").register(meterRegistry);
+        rejectedRows = Counter.builder("user.import.rows").tag("result", "rejected").register(meterRegistry);
+    }
+
+    /**
+     * Constant-time check of the X-Import-Key header.
+     */
+    public boolean isAuthorized(String key) {
+        return !apiKey.isEmpty() && key != null
+                && MessageDigest.isEqual(apiKey.getBytes(StandardCharsets.UTF_8), key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Imports users from an NDJSON stream, one {"email", "password", "name", ...} object per line.
+     * Each chunk is committed on its own. If hashing is saturated or the stream fails, the
+     * import stops and the result gives the line to resume from.
+     */
+    public ImportResult importUsers(InputStream ndjson) {
+        ImportResult result = new ImportResult();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        List<PendingRow> chunk = new ArrayList<>(chunkSize);
+        Set<String> chunkEmails = new HashSet<>();
+        long lineNumber = 0;
+        String line;
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                PendingRow row = parse(line, lineNumber, result);
+                if (row == null) {
+                    continue;
+                }
+                if (!chunkEmails.add(row.email)) {
+                    result.reject(row.line, row.email, "Duplicate email in import", maxReportedErrors);
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() >= chunkSize) {
+                    importChunk(chunk, result);
+                    chunk.clear();
+                    chunkEmails.clear();
+                }
+            }
+            importChunk(chunk, result);
+        } catch (ServiceBusyException e) {
+            stop(result, chunk, lineNumber, e.getMessage());
+        } catch (IOException e) {
+            stop(result, chunk, lineNumber, "Reading the import failed: " + e.getMessage());
+        }
+        importedRows.increment(result.getImported());
+        rejectedRows.increment(result.getRejected());
+        return result;
+    }
+
+    // Rows of the pending chunk were not written, so the client resumes from the first of them
+    private void stop(ImportResult result, List<PendingRow> chunk, long lineNumber, String reason) {
+        long resumeAt = chunk.isEmpty() ? lineNumber + 1 : chunk.get(0).line;
+        log.warn("User import stopped at line {}: {}", resumeAt, reason);
+        result.stop(resumeAt, reason);
+    }
+
+    // Same validation as UserService.createUser; returns null for rejected lines
+    private PendingRow parse(String line, long lineNumber, ImportResult result) {
+        ImportRow row;
+        try {
+            row = rowReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            result.reject(lineNumber, null, "Malformed JSON", maxReportedErrors);
+            return null;
+        }
+        if (row.getEmail() == null || row.getEmail().trim().isEmpty()) {
+            result.reject(lineNumber, null, "Email is required", maxReportedErrors);
+            return null;
+        }
+        if (row.getName() == null || row.getName().trim().isEmpty()) {
+            result.reject(lineNumber, row.getEmail(), "Name is required", maxReportedErrors);
+            return null;
+        }
+        if (row.getPassword() == null || row.getPassword().length() < 8) {
+            result.reject(lineNumber, row.getEmail(), "Password must be at least 8 characters long", maxReportedErrors);
+            return null;
+        }
+        return new PendingRow(lineNumber, row);
+    }
+
+    private void importChunk(List<PendingRow> chunk, ImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        // Drop already registered emails before spending BCrypt time on them
+        Set<String> existing = existingEmails(chunk);
+        List<PendingRow> rows = new ArrayList<>(chunk.size());
+        List<String> passwords = new ArrayList<>(chunk.size());
+        for (PendingRow row : chunk) {
+            if (existing.contains(row.email)) {
+                result.reject(row.line, row.email, "Email already registered", maxReportedErrors);
+            } else {
+                rows.add(row);
+                passwords.add(row.password);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        List<String> hashes = passwordHasher.encodeAll(passwords, hashParallelism);
+        Instant createdAt = Instant.ofEpochMilli(System.currentTimeMillis());
+        Set<String> insertedEmails = transactionTemplate.execute(status -> insert(rows, hashes, createdAt));
+
+        List<String> inserted = new ArrayList<>(rows.size());
+        for (PendingRow row : rows) {
+            if (insertedEmails.contains(row.email)) {
+                inserted.add(row.email);
+            } else {
+                result.reject(row.line, row.email, "Email already registered", maxReportedErrors);
+            }
+        }
+        result.imported(inserted.size());
+        // A tombstone cached for a new id expires within its short TTL
+        emailFilter.registerAll(inserted);
+        // Cached name searches do not see JDBC inserts
+        if (!inserted.isEmpty()) {
+            entityCacheEvictor.evictQueriesOnAllNodes();
+        }
+        recentActiveUsers.usersActivated(createdAt, inserted.size());
+    }
+
+    private Set<String> insert(List<PendingRow> rows, List<String> hashes, Instant createdAt) {
+        Long[] ids = allocateIds(rows.size());
+        String[][] columns = new String[6][rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            PendingRow row = rows.get(i);
+            columns[0][i] = row.email;
+            columns[1][i] = hashes.get(i);
+            columns[2][i] = row.name;
+            columns[3][i] = row.phoneNumber;
+            columns[4][i] = row.address;
+            columns[5][i] = row.avatarUrl;
+        }
+        Set<String> inserted = new HashSet<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_SQL);
+            statement.setTimestamp(1, Timestamp.from(createdAt));
+            statement.setArray(2, connection.createArrayOf("bigint", ids));
+            for (int column = 0; column < columns.length; column++) {
+                statement.setArray(column + 3, connection.createArrayOf("varchar", columns[column]));
+            }
+            return statement;
+        }, row -> {
+            inserted.add(row.getString(1));
+        });
+        return inserted;
+    }
+
+    // The column default would spend a whole sequence block per row
+    private Long[] allocateIds(int count) {
+        int blocks = (count + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE;
+        List<Long> blockEnds = jdbcTemplate.queryForList(ALLOCATE_ID_BLOCKS_SQL, Long.class, blocks);
+        Long[] ids = new Long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = blockEnds.get(i / ID_BLOCK_SIZE) - ID_BLOCK_SIZE + 1 + i % ID_BLOCK_SIZE;
+        }
+        return ids;
+    }
+
+    private Set<String> existingEmails(List<PendingRow> chunk) {
+        List<String> candidates = new ArrayList<>(chunk.size());
+        for (PendingRow row : chunk) {
+            if (emailFilter.mightContain(row.email)) {
+                candidates.add(row.email);
+            }
+        }
+        Set<String> existing = new HashSet<>();
+        if (candidates.isEmpty()) {
+            return existing;
+        }
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(EXISTING_EMAILS_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", candidates.toArray()));
+            return statement;
+        }, row -> {
+            existing.add(row.getString(1));
+        });
+        return existing;
+    }
+
+    /**
+     * One NDJSON line. The User entity cannot be used here because it never deserializes passwords.
+     */
+    public static class ImportRow {
+        private String email;
+        private String password;
+        private String name;
+        private String phoneNumber;
+        private String address;
+        private String avatarUrl;
+
+        public String getEmail() { return email; }
+        public void setEmail(String email) { this.email = email; }
+
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public String getPhoneNumber() { return phoneNumber; }
+        public void setPhoneNumber(String phoneNumber) { this.phoneNumber = phoneNumber; }
+
+        public String getAddress() { return address; }
+        public void setAddress(String address) { this.address = address; }
+
+        public String getAvatarUrl() { return avatarUrl; }
+        public void setAvatarUrl(String avatarUrl) { this.avatarUrl = avatarUrl; }
+    }
+
+    private static final class PendingRow {
+        final long line;
+        final String email;
+        final String password;
+        final String name;
+        final String phoneNumber;
+        final String address;
+        final String avatarUrl;
+
+        PendingRow(long line, ImportRow row) {
+            this.line = line;
+            this.email = row.getEmail();
+            this.password = row.getPassword();
+            this.name = row.getName();
+            this.phoneNumber = row.getPhoneNumber();
+            this.address = row.getAddress();
+            this.avatarUrl = row.getAvatarUrl();
+        }
+    }
+
+    /**
+     * Import summary. Only the first max-reported-errors rejections are listed individually.
+     */
+    public static class ImportResult {
+        private long imported;
+        private long rejected;
+        private Long stoppedAtLine;
+        private String stopReason;
+        private final List<RowError> errors = new ArrayList<>();
+
+        void imported(int count) {
+            imported += count;
+        }
+
+        void reject(long line, String email, String message, int maxReported) {
+            rejected++;
+            if (errors.size() < maxReported) {
+                errors.add(new RowError(line, email, message));
+            }
+        }
+
+        void stop(long line, String reason) {
+            stoppedAtLine = line;
+            stopReason = reason;
+        }
+
+        public long getImported() { return imported; }
+        public long getRejected() { return rejected; }
+        public Long getStoppedAtLine() { return stoppedAtLine; }
+        public String getStopReason() { return stopReason; }
+        public List<RowError> getErrors() { return errors; }
+        public boolean isComplete() { return stoppedAtLine == null; }
+    }
+
+    public static class RowError {
+        private final long line;
+        private final String email;
+        private final String message;
+
+        RowError(long line, String email, String message) {
+            this.line = line;
+            this.email = email;
+            this.message = message;
+        }
+
+        public long getLine() { return line; }
+        public String getEmail() { return email; }
+        public String getMessage() { return message; }
+    }
+}
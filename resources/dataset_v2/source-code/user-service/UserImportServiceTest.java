@@ -0,0 +1,222 @@
+package com.ecommerce.userservice.service;
+
+import com.ecommerce.userservice.cache.EmailBloomFilter;
+import com.ecommerce.userservice.repository.RecentActiveUsersRollup;
+import com.ecommerce.userservice.repository.UserEntityCacheEvictor;
+import com.ecommerce.userservice.security.PasswordHasher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserImportServiceTest {
+
+    private final Set<String> registeredEmails = new HashSet<>();
+    private final List<Long> insertedIds = new ArrayList<>();
+    private long nextBlockEnd = 1000;
+
+    private UserImportService importService;
+    private EmailBloomFilter emailFilter;
+    private RecentActiveUsersRollup recentActiveUsers;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            runQuery(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any())).thenAnswer(invocation -> {
+            List<Long> blockEnds = new ArrayList<>();
+            for (int i = 0; i < invocation.<Integer>getArgument(2); i++) {
+                blockEnds.add(nextBlockEnd += 50);
+            }
+            return blockEnds;
+        });
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(
+                invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        PasswordHasher passwordHasher = mock(PasswordHasher.class);
+        when(passwordHasher.encodeAll(anyList(), anyInt())).thenAnswer(invocation -> {
+            List<String> passwords = invocation.getArgument(0);
+            return passwords.stream().map(password -> "hash:" + password).collect(Collectors.toList());
+        });
+
+        emailFilter = mock(EmailBloomFilter.class);
+        when(emailFilter.mightContain(anyString())).thenReturn(true);
+        recentActiveUsers = mock(RecentActiveUsersRollup.class);
+
+        importService = new UserImportService();
+        ReflectionTestUtils.setField(importService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(importService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(importService, "passwordHasher", passwordHasher);
+        ReflectionTestUtils.setField(importService, "emailFilter", emailFilter);
+        ReflectionTestUtils.setField(importService, "recentActiveUsers", recentActiveUsers);
+        ReflectionTestUtils.setField(importService, "entityCacheEvictor", mock(UserEntityCacheEvictor.class));
+        ReflectionTestUtils.setField(importService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(importService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(importService, "chunkSize", 2);
+        ReflectionTestUtils.setField(importService, "hashParallelism", 1);
+        ReflectionTestUtils.setField(importService, "maxReportedErrors", 100);
+        importService.init();
+    }
+
+    @Test
+    void countsImportedAndRejectedRowsPerLine() {
+        registeredEmails.add("taken@example.com");
+        UserImportService.ImportResult result = importService.importUsers(ndjson(
+                row("a@example.com"),
+                "{not json",
+                "{\"email\":\"b@example.com\",\"password\":\"password1\"}",
+                "{\"email\":\"c@example.com\",\"password\":\"short\",\"name\":\"C\"}",
+                row("taken@example.com"),
+                row("d@example.com"),
+                row("d@example.com"),
+                row("e@example.com")));
+
+        assertTrue(result.isComplete());
+        assertEquals(3, result.getImported());
+        assertEquals(5, result.getRejected());
+        assertEquals(Arrays.asList(2L, 3L, 4L, 5L, 7L), lines(result));
+        assertEquals("Email already registered", result.getErrors().get(3).getMessage());
+        assertEquals("Duplicate email in import", result.getErrors().get(4).getMessage());
+    }
+
+    @Test
+    void reportsRowsSkippedByTheInsertAsDuplicates() {
+        // Registered after the pre-check, so only ON CONFLICT DO NOTHING sees it
+        when(emailFilter.mightContain(anyString())).thenReturn(false);
+        registeredEmails.add("raced@example.com");
+
+        UserImportService.ImportResult result = importService.importUsers(ndjson(
+                row("raced@example.com"),
+                row("new@example.com")));
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals("raced@example.com", result.getErrors().get(0).getEmail());
+        verify(emailFilter).registerAll(Arrays.asList("new@example.com"));
+        verify(recentActiveUsers).usersActivated(any(Instant.class), eq(1));
+    }
+
+    @Test
+    void returnsPartialResultWhenTheStreamFails() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+        InputStream body = new SequenceInputStream(
+                ndjson(row("a@example.com"), row("b@example.com"), row("c@example.com")), failing);
+
+        UserImportService.ImportResult result = importService.importUsers(body);
+
+        assertFalse(result.isComplete());
+        assertEquals(2, result.getImported());
+        assertEquals(3L, result.getStoppedAtLine());
+        assertTrue(registeredEmails.containsAll(Arrays.asList("a@example.com", "b@example.com")));
+        assertFalse(registeredEmails.contains("c@example.com"));
+    }
+
+    @Test
+    void takesRowIdsFromSequenceBlocks() {
+        ReflectionTestUtils.setField(importService, "chunkSize", 60);
+        String[] rows = new String[60];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = row("user" + i + "@example.com");
+        }
+
+        importService.importUsers(ndjson(rows));
+
+        // Blocks ending at 1050 and 1100 cover ids 1001..1100
+        assertEquals(60, insertedIds.size());
+        assertEquals(1001L, insertedIds.get(0));
+        assertEquals(1050L, insertedIds.get(49));
+        assertEquals(1051L, insertedIds.get(50));
+        assertEquals(60, new HashSet<>(insertedIds).size());
+    }
+
+    // Answers the import's two statements against registeredEmails
+    private void runQuery(PreparedStatementCreator creator, RowCallbackHandler handler) throws Exception {
+        List<String[]> arrays = new ArrayList<>();
+        List<String> sql = new ArrayList<>();
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> {
+            sql.add(invocation.getArgument(0));
+            return mock(PreparedStatement.class);
+        });
+        when(connection.createArrayOf(eq("varchar"), any())).thenAnswer(invocation -> {
+            Object[] values = invocation.getArgument(1);
+            arrays.add(Arrays.copyOf(values, values.length, String[].class));
+            return null;
+        });
+        when(connection.createArrayOf(eq("bigint"), any())).thenAnswer(invocation -> {
+            insertedIds.addAll(Arrays.asList((Long[]) invocation.getArgument(1)));
+            return null;
+        });
+        creator.createPreparedStatement(connection);
+
+        List<String> returned = new ArrayList<>();
+        for (String email : arrays.get(0)) {
+            boolean registered = registeredEmails.contains(email);
+            if (sql.get(0).startsWith("INSERT") ? registeredEmails.add(email) : registered) {
+                returned.add(email);
+            }
+        }
+        for (String email : returned) {
+            ResultSet row = mock(ResultSet.class);
+            when(row.getString(1)).thenReturn(email);
+            handler.processRow(row);
+        }
+    }
+
+    private static String row(String email) {
+        return "{\"email\":\"" + email + "\",\"password\":\"password1\",\"name\":\"Name\"}";
+    }
+
+    private static InputStream ndjson(String... lines) {
+        return new ByteArrayInputStream((String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<Long> lines(UserImportService.ImportResult result) {
+        return result.getErrors().stream().map(UserImportService.RowError::getLine).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,21 @@
+package com.ecommerce.userservice.repository;
+
+import com.ecommerce.userservice.model.User;
+
+/**
+ * Email lookups through Hibernate's natural-id API, which the second-level cache can answer
+ * without a query. Implemented by UserNaturalIdLookupImpl and exposed on UserRepository.
+ */
+public interface UserNaturalIdLookup {
+
+    /**
+     * Like findByEmail, served from the natural-id and entity caches when enabled.
+     * @return User entity or null if not found
+     */
+    User findByNaturalEmail(String email);
+
+    /**
+     * Like existsByEmail, served from the natural-id cache when enabled.
+     */
+    boolean existsByNaturalEmail(String email);
+}
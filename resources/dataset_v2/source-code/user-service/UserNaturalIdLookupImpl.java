@@ -0,0 +1,52 @@
+package com.ecommerce.userservice.repository;
+
+import com.ecommerce.userservice.model.User;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+/**
+ * Natural-id email lookups on the primary.
+ * With the second-level cache off, a natural-id load costs two queries (email to id, then
+ * the row), so plain queries are used instead.
+ */
+public class UserNaturalIdLookupImpl implements UserNaturalIdLookup {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${user.jpa.second-level-cache.enabled:false}")
+    private boolean secondLevelCacheEnabled;
+
+    @Override
+    @Transactional
+    public User findByNaturalEmail(String email) {
+        if (secondLevelCacheEnabled) {
+            return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).load(email);
+        }
+        List<User> users = entityManager
+                .createQuery("SELECT u FROM User u WHERE u.email = :email", User.class)
+                .setParameter("email", email)
+                .getResultList();
+        return users.isEmpty() ? null : users.get(0);
+    }
+
+    @Override
+    @Transactional
+    public boolean existsByNaturalEmail(String email) {
+        if (secondLevelCacheEnabled) {
+            // Resolves email to id only; the row itself is not loaded
+            return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).getReference(email) != null;
+        }
+        return !entityManager
+                .createQuery("SELECT u.id FROM User u WHERE u.email = :email", Long.class)
+                .setParameter("email", email)
+                .setMaxResults(1)
+                .getResultList()
+                .isEmpty();
+    }
+}
@@ -0,0 +1,20 @@
+package com.ecommerce.userservice.model;
+
+import java.time.Instant;
+
+/**
+ * Read-only profile projection of User.
+ * Carries every column shown on the profile endpoints and never the password hash.
+ */
+public interface UserProfileView {
+    Long getId();
+    String getEmail();
+    String getName();
+    String getPhoneNumber();
+    String getAddress();
+    String getAvatarUrl();
+    boolean isActive();
+    Instant getCreatedAt();
+    Instant getLastLoginAt();
+    Long getVersion();
+}
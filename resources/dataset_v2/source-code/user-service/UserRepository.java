@@ -1,19 +1,41 @@
 package com.ecommerce.userservice.repository;
 
 import com.ecommerce.userservice.model.User;
+import com.ecommerce.userservice.model.UserActivityView;
+import com.ecommerce.userservice.model.UserProfileView;
+import com.ecommerce.userservice.model.UserSearchResult;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 /**
  * Repository interface for User entity database operations.
  * Extends JpaRepository for basic CRUD operations.
  * Custom queries for email validation and user search functionality.
+ * Reads that need no managed entity return projections. Queries run read-only, on the
+ * replica when one is configured (see ReplicaRoutingConfig).
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+@Transactional(readOnly = true)
+public interface UserRepository extends JpaRepository<User, Long>, UserNaturalIdLookup {
 
     /**
      * Finds user by email address.
@@ -21,6 +43,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @param email User email address
      * @return User entity or null if not found
      */
+    // Primary only, so logins see new accounts and the current password hash
+    @Transactional
     User findByEmail(String email);
 
     /**
@@ -31,14 +55,79 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     boolean existsByEmail(String email);
 
+    /**
+     * Activates or deactivates a user.
+     * @return 1 if the flag changed, 0 if it already had that value or the user does not exist
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.isActive = :active WHERE u.id = :id AND u.isActive <> :active")
+    int updateActive(@Param("id") Long id, @Param("active") boolean active);
+
+    String PROFILE_COLUMNS = "u.id AS id, u.email AS email, u.name AS name, u.phoneNumber AS phoneNumber, "
+            + "u.address AS address, u.avatarUrl AS avatarUrl, u.isActive AS active, "
+            + "u.createdAt AS createdAt, u.lastLoginAt AS lastLoginAt, u.version AS version";
+
+    /**
+     * Loads the profile columns of a user, without the password hash.
+     */
+    @Query("SELECT " + PROFILE_COLUMNS + " FROM User u WHERE u.id = :id")
+    Optional<UserProfileView> findProfileById(@Param("id") Long id);
+
+    /**
+     * Batch variant of findProfileById. Missing ids are skipped.
+     */
+    @Query("SELECT " + PROFILE_COLUMNS + " FROM User u WHERE u.id IN :ids")
+    List<UserProfileView> findProfilesByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * Finds users by name pattern (case-insensitive).
      * Supports partial name matching for user search functionality.
-     * Results are limited to 50 users for performance.
+     * Results are limited to 50 users for performance, best matches first.
+     * Terms shorter than 3 characters have no trigrams and are returned in (name, id) order.
      */
-    @Query("SELECT u FROM User u WHERE LOWER(u.name) LIKE LOWER(CONCAT('%', ?1, '%')) ORDER BY u.name")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query(value = "(SELECT * FROM users WHERE char_length(?1) >= 3 AND name ILIKE CONCAT('%', ?1, '%') "
+            + "ORDER BY ?1 <<-> name, name, id LIMIT 50) "
+            + "UNION ALL "
+            + "(SELECT * FROM users WHERE char_length(?1) < 3 AND name ILIKE CONCAT('%', ?1, '%') "
+            + "ORDER BY name, id LIMIT 50)", nativeQuery = true)
     List<User> findByNameContainingIgnoreCase(String name);
 
+    /**
+     * Same search as findByNameContainingIgnoreCase, returning only the result row columns.
+     * Cacheable; the native spaces hint lets writes to users invalidate cached results.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HINT_NATIVE_SPACES, value = "users")
+    })
+    @Query(value = "(SELECT id AS \"id\", name AS \"name\", avatar_url AS \"avatarUrl\" FROM users "
+            + "WHERE char_length(?1) >= 3 AND name ILIKE CONCAT('%', ?1, '%') "
+            + "ORDER BY ?1 <<-> name, name, id LIMIT 50) "
+            + "UNION ALL "
+            + "(SELECT id, name, avatar_url FROM users "
+            + "WHERE char_length(?1) < 3 AND name ILIKE CONCAT('%', ?1, '%') "
+            + "ORDER BY name, id LIMIT 50)", nativeQuery = true)
+    List<UserSearchResult> searchByName(String name);
+
+    /**
+     * Keyset-paginated name search, ordered by (name, id).
+     * Pass the name and id of the last row of the previous page, or "" and 0 for the first page.
+     * Served from the (name, id) index, see users_name_id_index.sql.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HINT_NATIVE_SPACES, value = "users")
+    })
+    @Query(value = "SELECT id AS \"id\", name AS \"name\", avatar_url AS \"avatarUrl\" FROM users "
+            + "WHERE name ILIKE CONCAT('%', :name, '%') "
+            + "AND (name, id) > (:afterName, :afterId) ORDER BY name, id LIMIT :limit", nativeQuery = true)
+    List<UserSearchResult> findByNameContainingIgnoreCaseAfter(@Param("name") String name,
+                                                               @Param("afterName") String afterName,
+                                                               @Param("afterId") long afterId,
+                                                               @Param("limit") int limit);
+
     /**
      * Retrieves all active users created in the last 30 days.
      * Used for analytics and recent user activity reports.
@@ -46,4 +135,33 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     @Query("SELECT u FROM User u WHERE u.isActive = true AND u.createdAt >= CURRENT_DATE - 30")
     List<User> findRecentActiveUsers();
+
+    /**
+     * Keyset-paginated variant of findRecentActiveUsers, ordered by id.
+     * Pass RecentActiveUsersRollup.windowStart() as since for the same window, and the id of
+     * the last row of the previous page, or 0 for the first page.
+     * @param page Page size only, e.g. PageRequest.of(0, 500)
+     */
+    @Query("SELECT u FROM User u WHERE u.isActive = true AND u.createdAt >= :since AND u.id > :afterId ORDER BY u.id")
+    List<User> findRecentActiveUsersAfter(@Param("since") Instant since, @Param("afterId") long afterId, Pageable page);
+
+    /**
+     * Streams active users created since the given date for batch jobs and exports.
+     * Must be consumed inside a read-only transaction and closed; detach each entity after use.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HINT_READONLY, value = "true"),
+        @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("SELECT u FROM User u WHERE u.isActive = true AND u.createdAt >= :since ORDER BY u.id")
+    Stream<User> streamRecentActiveUsers(@Param("since") Instant since);
+
+    /**
+     * Keyset-paginated activity view of recent active users for analytics.
+     * Pass the id of the last row of the previous page, or 0 for the first page.
+     */
+    @Query("SELECT u.id AS id, u.createdAt AS createdAt, u.lastLoginAt AS lastLoginAt FROM User u "
+            + "WHERE u.isActive = true AND u.createdAt >= :since AND u.id > :afterId ORDER BY u.id")
+    List<UserActivityView> findRecentActivityAfter(@Param("since") Instant since, @Param("afterId") long afterId, Pageable page);
 }
@@ -0,0 +1,70 @@
+package com.ecommerce.userservice.repository;
+
+import com.ecommerce.userservice.model.User;
+import com.ecommerce.userservice.model.UserSearchResult;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Native PostgreSQL queries, so they run against an embedded PostgreSQL rather than H2
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+class UserRepositoryTest {
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = User.class)
+    static class Config {
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void keysetSearchPagesThroughEveryMatchInNameAndIdOrder() {
+        // Three equal names, so a page boundary falls between them
+        List<User> users = userRepository.saveAllAndFlush(Arrays.asList(
+                user("Joanna"), user("Ann"), user("Bob"), user("Ann"), user("Annabel"), user("Ann"), user("Hannah")));
+        List<Long> expected = users.stream()
+                .filter(user -> user.getName().toLowerCase().contains("ann"))
+                .sorted(Comparator.comparing(User::getName).thenComparing(User::getId))
+                .map(User::getId)
+                .collect(Collectors.toList());
+
+        List<UserSearchResult> results = new ArrayList<>();
+        int pages = 0;
+        String afterName = "";
+        long afterId = 0;
+        List<UserSearchResult> page;
+        while (!(page = userRepository.findByNameContainingIgnoreCaseAfter("ANN", afterName, afterId, 2)).isEmpty()) {
+            results.addAll(page);
+            pages++;
+            UserSearchResult last = page.get(page.size() - 1);
+            afterName = last.getName();
+            afterId = last.getId();
+        }
+
+        assertEquals(3, pages);
+        assertEquals(expected, results.stream().map(UserSearchResult::getId).collect(Collectors.toList()));
+        assertEquals("https://cdn.example.com/Ann.png", results.get(0).getAvatarUrl());
+    }
+
+    private static User user(String name) {
+        User user = new User(name.toLowerCase() + "." + System.nanoTime() + "@example.com", "hash", name);
+        user.setAvatarUrl("https://cdn.example.com/" + name + ".png");
+        return user;
+    }
+}
@@ -0,0 +1,10 @@
+package com.ecommerce.userservice.model;
+
+/**
+ * Projection of User for name search results: just enough to render a result row.
+ */
+public interface UserSearchResult {
+    Long getId();
+    String getName();
+    String getAvatarUrl();
+}
@@ -1,15 +1,49 @@
 package com.ecommerce.userservice.service;
 
+import com.ecommerce.userservice.cache.EmailBloomFilter;
+import com.ecommerce.userservice.cache.UserCache;
+import com.ecommerce.userservice.exception.ServiceBusyException;
+import com.ecommerce.userservice.exception.UpdateConflictException;
 import com.ecommerce.userservice.model.User;
+import com.ecommerce.userservice.model.UserProfileView;
+import com.ecommerce.userservice.model.UserSummary;
+import com.ecommerce.userservice.repository.LastLoginWriteBehind;
+import com.ecommerce.userservice.repository.ReadYourWritesTracker;
+import com.ecommerce.userservice.repository.RecentActiveUsersRollup;
+import com.ecommerce.userservice.repository.UserEntityCacheEvictor;
 import com.ecommerce.userservice.repository.UserRepository;
+import com.ecommerce.userservice.security.JwtTokenIssuer;
+import com.ecommerce.userservice.security.PasswordHasher;
+import com.ecommerce.userservice.security.VerifiedToken;
+import com.ecommerce.userservice.security.VerifiedTokenCache;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import redis.clients.jedis.Jedis;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Date;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service layer for user management operations.
@@ -22,39 +56,113 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
     
+    // BCrypt runs on a bounded pool off the request thread, see PasswordHasher
     @Autowired
-    private BCryptPasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
     
-    private Jedis redisClient;
+    // Near cache backed by Redis, see UserCache
+    @Autowired
+    private UserCache userCache;
+    
+    @Autowired
+    private VerifiedTokenCache tokenCache;
+    
+    @Autowired
+    private LastLoginWriteBehind lastLoginWriteBehind;
+    
+    @Autowired
+    private EmailBloomFilter emailFilter;
+    
+    @Autowired
+    private RecentActiveUsersRollup recentActiveUsers;
+    
+    // Keeps reads of just-written users off a lagging replica
+    @Autowired
+    private ReadYourWritesTracker readYourWrites;
+    
+    // Hibernate second-level cache, when enabled
+    @Autowired
+    private UserEntityCacheEvictor entityCacheEvictor;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Shared secret other services send in X-Service-Key for batch lookups. Disabled when empty.
+     */
+    @Value("${user.service-api-key:}")
+    private String serviceApiKey;
+
     private final String JWT_SECRET = "ecommerce_secret_key_2023";
+    private static final long TOKEN_TTL_MILLIS = 3 * 60 * 60 * 1000; // 3 hours
+    private static final int MAX_BATCH_SIZE = 500;
     
-    public UserService() {
-        // Connect to Redis instance for session caching
-        this.redisClient = new Jedis("localhost", 6379);
-    }
+    /**
+     * Profile fields carried as JWT claims (see generateToken).
+     */
+    public static final Set<String> TOKEN_PROFILE_FIELDS =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList("id", "email", "name")));
+    
+    // Signing key derived once from JWT_SECRET
+    private final JwtTokenIssuer tokenIssuer = new JwtTokenIssuer(JWT_SECRET);
 
     /**
      * Creates a new user account with encrypted password.
      * Validates email uniqueness and password strength.
+     * The unique email constraint decides between concurrent registrations.
      * @param user User registration data
      * @return Created user with generated ID
      */
     public User createUser(User user) throws Exception {
-        // Check if email already exists in MySQL database
-        if (userRepository.existsByEmail(user.getEmail())) {
-            throw new Exception("Email already registered");
-        }
-        
         // Validate password strength (minimum 8 characters)
         if (user.getPassword().length() < 8) {
             throw new Exception("Password must be at least 8 characters long");
         }
         
+        // Check if email already exists in MySQL database
+        // Only when the email filter reports a likely duplicate
+        if (emailFilter.mightContain(user.getEmail()) && userRepository.existsByNaturalEmail(user.getEmail())) {
+            throw new Exception("Email already registered");
+        }
+        
         // Hash password before storing
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-        user.setCreatedAt(new Date());
+        user.setPassword(passwordHasher.encode(user.getPassword()));
+        // A client-supplied version would make the new entity look persisted
+        user.setVersion(null);
+        // Millisecond precision, the same the cache codec keeps
+        user.setCreatedAt(Instant.ofEpochMilli(System.currentTimeMillis()));
         
-        return userRepository.save(user);
+        User savedUser;
+        try {
+            // Flush so a constraint violation surfaces here rather than at a later commit
+            savedUser = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            if (isUniqueViolation(e)) {
+                throw new Exception("Email already registered");
+            }
+            throw e;
+        }
+        readYourWrites.recordWrite(savedUser.getId());
+        emailFilter.register(savedUser.getEmail());
+        if (savedUser.isActive()) {
+            recentActiveUsers.userActivated(savedUser.getCreatedAt());
+        }
+        // Drop any tombstone cached while this id did not exist yet
+        userCache.clearTombstone(savedUser.getId().toString());
+        return savedUser;
+    }
+
+    // PostgreSQL SQLSTATE 23505; email is the only unique column besides the primary key
+    private static boolean isUniqueViolation(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && "23505".equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -62,14 +170,26 @@ public class UserService {
      * @param email User email address
      * @param password Plain text password
      * @return Authenticated user or null if invalid credentials
+     * @throws ServiceBusyException if the password hashing pool is saturated
      */
     public User authenticate(String email, String password) {
-        User user = userRepository.findByEmail(email);
+        User user = userRepository.findByNaturalEmail(email);
         
-        if (user != null && passwordEncoder.matches(password, user.getPassword())) {
-            // Update last login timestamp
-            user.setLastLoginAt(new Date());
-            userRepository.save(user);
+        if (user != null && passwordHasher.matches(password, user.getPassword())) {
+            // Update last login timestamp, written in batches by LastLoginWriteBehind
+            long now = System.currentTimeMillis();
+            user.setLastLoginAt(Instant.ofEpochMilli(now));
+            lastLoginWriteBehind.record(user.getId(), now);
+            
+            // Re-encode hashes made with an outdated cost while the plain password is at hand
+            if (passwordHasher.needsRehash(user.getPassword())) {
+                try {
+                    user.setPassword(passwordHasher.encode(password));
+                    userRepository.save(user);
+                } catch (ServiceBusyException | ObjectOptimisticLockingFailureException e) {
+                    // Keep the old hash and retry on a later login
+                }
+            }
             return user;
         }
         
@@ -81,16 +201,77 @@ public class UserService {
      * Token includes user ID and email in claims.
      */
     public String generateToken(User user) {
-        Date expiration = new Date(System.currentTimeMillis() + (3 * 60 * 60 * 1000)); // 3 hours
+        long now = System.currentTimeMillis();
         
-        return Jwts.builder()
-                .setSubject(user.getId().toString())
-                .claim("email", user.getEmail())
-                .claim("name", user.getName())
-                .setIssuedAt(new Date())
-                .setExpiration(expiration)
-                .signWith(SignatureAlgorithm.HS256, JWT_SECRET)
-                .compact();
+        return tokenIssuer.issue(
+                user.getId().toString(),
+                user.getEmail(),
+                user.getName(),
+                now,
+                now + TOKEN_TTL_MILLIS);
+    }
+
+    /**
+     * Extracts the user ID (subject) from a JWT.
+     * Verified tokens are cached until they expire, so repeat requests skip HMAC verification.
+     * @param token Token, optionally prefixed with "Bearer "
+     * @throws io.jsonwebtoken.JwtException if the token is invalid, expired or revoked
+     */
+    public String extractUserIdFromToken(String token) {
+        return verifyToken(token).getSubject();
+    }
+    
+    /**
+     * Verifies a JWT and returns its claims.
+     */
+    public VerifiedToken verifyToken(String token) {
+        return tokenCache.getOrVerify(stripBearerPrefix(token), this::parseToken);
+    }
+    
+    /**
+     * Builds a lite profile straight from verified token claims.
+     * @param fields Requested fields, all of them in TOKEN_PROFILE_FIELDS
+     */
+    public Map<String, Object> getTokenProfile(String token, Set<String> fields) {
+        VerifiedToken claims = verifyToken(token);
+        Map<String, Object> profile = new LinkedHashMap<>();
+        if (fields.contains("id")) {
+            profile.put("id", Long.valueOf(claims.getSubject()));
+        }
+        if (fields.contains("email")) {
+            profile.put("email", claims.getEmail());
+        }
+        if (fields.contains("name")) {
+            profile.put("name", claims.getName());
+        }
+        return profile;
+    }
+    
+    /**
+     * Revokes a token (logout) on every node until it expires.
+     */
+    public void revokeToken(String token) {
+        String jwt = stripBearerPrefix(token);
+        VerifiedToken claims = tokenCache.getOrVerify(jwt, this::parseToken);
+        tokenCache.revoke(jwt, claims.getExpiresAtMillis());
+    }
+    
+    private VerifiedToken parseToken(String jwt) {
+        Claims claims = Jwts.parser()
+                .setSigningKey(JWT_SECRET)
+                .parseClaimsJws(jwt)
+                .getBody();
+        // Tokens without exp are accepted by jjwt but never cached
+        long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : 0L;
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get("email", String.class),
+                claims.get("name", String.class),
+                expiresAt);
+    }
+    
+    private static String stripBearerPrefix(String token) {
+        return token.startsWith("Bearer ") ? token.substring(7) : token;
     }
 
     /**
@@ -98,29 +279,183 @@ public class UserService {
      * Cache TTL is set to 45 minutes for optimal performance.
      */
     public User getUserById(String userId) {
-        // Check Redis cache first
-        String cacheKey = "user:" + userId;
-        String cachedUser = redisClient.get(cacheKey);
-        
-        if (cachedUser != null) {
-            return deserializeUser(cachedUser);
+        // Check near cache and Redis first, concurrent misses share one database load
+        return userCache.getOrLoad(userId,
+                id -> {
+                    Long key = Long.parseLong(id);
+                    return readYourWrites.read(key,
+                            () -> userRepository.findProfileById(key).map(UserService::toUser).orElse(null));
+                });
+    }
+    
+    /**
+     * Constant-time check of the X-Service-Key header used by internal callers.
+     */
+    public boolean isServiceAuthorized(String key) {
+        return !serviceApiKey.isEmpty() && key != null
+                && MessageDigest.isEqual(serviceApiKey.getBytes(StandardCharsets.UTF_8), key.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Retrieves several users by ID with a single Redis MGET and at most one database query.
+     * Returns the public summary only (id, name, avatar), never contact details.
+     * @param userIds User IDs, at most 500
+     * @return Found users in request order; unknown IDs are skipped
+     */
+    public List<UserSummary> getUsersByIds(Collection<String> userIds) throws Exception {
+        if (userIds.size() > MAX_BATCH_SIZE) {
+            throw new Exception("At most " + MAX_BATCH_SIZE + " user IDs can be requested at once");
         }
         
-        // Fetch from database if not in cache
-        User user = userRepository.findById(Long.parseLong(userId)).orElse(null);
-        
-        if (user != null) {
-            redisClient.setex(cacheKey, 2700, serializeUser(user));
+        Map<String, User> users = userCache.getAllOrLoad(userIds, misses -> {
+            List<Long> ids = new ArrayList<>(misses.size());
+            for (String id : misses) {
+                ids.add(Long.parseLong(id));
+            }
+            Map<String, User> loaded = new HashMap<>();
+            for (UserProfileView profile : readYourWrites.read(ids, () -> userRepository.findProfilesByIdIn(ids))) {
+                loaded.put(profile.getId().toString(), toUser(profile));
+            }
+            return loaded;
+        });
+        List<UserSummary> summaries = new ArrayList<>(users.size());
+        for (User user : users.values()) {
+            summaries.add(new UserSummary(user));
+        }
+        return summaries;
+    }
+    
+    /**
+     * Streams active users created in the rollup's 30-day window to the consumer, for exports.
+     * Rows arrive through a cursor and are detached once consumed, so memory use stays flat.
+     */
+    @Transactional(readOnly = true)
+    public void exportRecentActiveUsers(Consumer<User> consumer) {
+        try (Stream<User> users = userRepository.streamRecentActiveUsers(recentActiveUsers.windowStart())) {
+            users.forEach(user -> {
+                consumer.accept(user);
+                entityManager.detach(user);
+            });
+        }
+    }
+    
+    /**
+     * Applies the non-null name, phoneNumber, address and avatarUrl of a partial update and
+     * writes the committed profile through to the cache.
+     * @param userUpdate Fields to change; if it carries a version, that must be the current one
+     * @throws UpdateConflictException if the user changed since the client's read or concurrently
+     */
+    public User updateUser(String userId, User userUpdate) throws Exception {
+        Long id = Long.parseLong(userId);
+        User updated;
+        try {
+            // Loaded and written in one read-write transaction, so always on the primary
+            updated = transactionTemplate.execute(status -> {
+                User user = userRepository.findById(id).orElse(null);
+                if (user == null) {
+                    return null;
+                }
+                if (userUpdate.getVersion() != null && !userUpdate.getVersion().equals(user.getVersion())) {
+                    throw new UpdateConflictException("Profile was modified by another request");
+                }
+                if (userUpdate.getName() != null) {
+                    user.setName(userUpdate.getName());
+                }
+                if (userUpdate.getPhoneNumber() != null) {
+                    user.setPhoneNumber(userUpdate.getPhoneNumber());
+                }
+                if (userUpdate.getAddress() != null) {
+                    user.setAddress(userUpdate.getAddress());
+                }
+                if (userUpdate.getAvatarUrl() != null) {
+                    user.setAvatarUrl(userUpdate.getAvatarUrl());
+                }
+                // Flushed at commit: UPDATE of the changed columns WHERE id = ? AND version = ?
+                return user;
+            });
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new UpdateConflictException("Profile was modified by another request");
+        }
+        if (updated == null) {
+            throw new Exception("User not found");
         }
         
+        readYourWrites.recordWrite(id);
+        // Best effort, the update is already committed
+        userCache.update(userId, withoutPassword(updated));
+        return updated;
+    }
+    
+    private static User withoutPassword(User entity) {
+        User user = new User();
+        user.setId(entity.getId());
+        user.setEmail(entity.getEmail());
+        user.setName(entity.getName());
+        user.setPhoneNumber(entity.getPhoneNumber());
+        user.setAddress(entity.getAddress());
+        user.setAvatarUrl(entity.getAvatarUrl());
+        user.setActive(entity.isActive());
+        user.setCreatedAt(entity.getCreatedAt());
+        user.setLastLoginAt(entity.getLastLoginAt());
+        user.setVersion(entity.getVersion());
         return user;
     }
     
-    public void invalidateUserCache(String userId) {
-        redisClient.del("user:" + userId);
+    // Detached, password-less User for caching and JSON responses
+    private static User toUser(UserProfileView profile) {
+        User user = new User();
+        user.setId(profile.getId());
+        user.setEmail(profile.getEmail());
+        user.setName(profile.getName());
+        user.setPhoneNumber(profile.getPhoneNumber());
+        user.setAddress(profile.getAddress());
+        user.setAvatarUrl(profile.getAvatarUrl());
+        user.setActive(profile.isActive());
+        user.setCreatedAt(profile.getCreatedAt());
+        user.setLastLoginAt(profile.getLastLoginAt());
+        user.setVersion(profile.getVersion());
+        return user;
+    }
+    
+    /**
+     * Counts active users created in the last 30 days from the maintained rollup.
+     */
+    public long countRecentActiveUsers() {
+        return recentActiveUsers.count();
+    }
+    
+    /**
+     * Activates or deactivates (soft-deletes) a user account.
+     * @throws Exception if the user does not exist
+     */
+    public void setUserActive(String userId, boolean active) throws Exception {
+        Long id = Long.parseLong(userId);
+        if (userRepository.updateActive(id, active) == 0) {
+            if (!readYourWrites.read(id, () -> userRepository.existsById(id))) {
+                throw new Exception("User not found");
+            }
+            // Already in the requested state, nothing to count
+            return;
+        }
+        readYourWrites.recordWrite(id);
+        Instant createdAt = readYourWrites.read(id,
+                () -> userRepository.findProfileById(id).map(UserProfileView::getCreatedAt).orElse(null));
+        if (createdAt != null) {
+            if (active) {
+                recentActiveUsers.userActivated(createdAt);
+            } else {
+                recentActiveUsers.userDeactivated(createdAt);
+            }
+        }
+        invalidateUserCache(userId);
     }
     
-    // Helper methods for serialization (implementation omitted for brevity)
-    private String serializeUser(User user) { return ""; }
-    private User deserializeUser(String data) { return new User(); }
+    /**
+     * Drops the cached profile from Redis, from every node's near cache and from the
+     * Hibernate second-level cache.
+     */
+    public void invalidateUserCache(String userId) {
+        entityCacheEvictor.evict(Long.parseLong(userId));
+        userCache.invalidate(userId);
+    }
 }
@@ -0,0 +1,100 @@
+package com.ecommerce.userservice.service;
+
+import com.ecommerce.userservice.cache.UserCache;
+import com.ecommerce.userservice.exception.UpdateConflictException;
+import com.ecommerce.userservice.model.User;
+import com.ecommerce.userservice.repository.ReadYourWritesTracker;
+import com.ecommerce.userservice.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserServiceTest {
+
+    private UserService userService;
+    private UserRepository userRepository;
+    private TransactionTemplate transactionTemplate;
+    private UserCache userCache;
+    private User stored;
+
+    @BeforeEach
+    void setUp() {
+        stored = new User();
+        stored.setId(7L);
+        stored.setEmail("ada@example.com");
+        stored.setPassword("hash");
+        stored.setName("Ada");
+        stored.setPhoneNumber("555-0100");
+        stored.setVersion(3L);
+
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findById(7L)).thenReturn(Optional.of(stored));
+        transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(
+                invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        userCache = mock(UserCache.class);
+
+        userService = new UserService();
+        ReflectionTestUtils.setField(userService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(userService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(userService, "userCache", userCache);
+        ReflectionTestUtils.setField(userService, "readYourWrites", mock(ReadYourWritesTracker.class));
+    }
+
+    @Test
+    void appliesChangedFieldsWhenTheVersionMatches() throws Exception {
+        User update = new User();
+        update.setName("Ada Lovelace");
+        update.setVersion(3L);
+
+        User updated = userService.updateUser("7", update);
+
+        assertEquals("Ada Lovelace", updated.getName());
+        assertEquals("555-0100", updated.getPhoneNumber());
+        ArgumentCaptor<User> cached = ArgumentCaptor.forClass(User.class);
+        verify(userCache).update(any(), cached.capture());
+        assertEquals("Ada Lovelace", cached.getValue().getName());
+        assertNull(cached.getValue().getPassword());
+    }
+
+    @Test
+    void rejectsAnUpdateBasedOnAnOlderVersion() {
+        User update = new User();
+        update.setName("Ada Lovelace");
+        update.setVersion(2L);
+
+        assertThrows(UpdateConflictException.class, () -> userService.updateUser("7", update));
+
+        assertEquals("Ada", stored.getName());
+        verify(userCache, never()).update(anyString(), any());
+    }
+
+    @Test
+    void reportsAConcurrentUpdateAsAConflict() {
+        doThrow(new ObjectOptimisticLockingFailureException(User.class, 7L))
+                .when(transactionTemplate).execute(any());
+        User update = new User();
+        update.setName("Ada Lovelace");
+
+        assertThrows(UpdateConflictException.class, () -> userService.updateUser("7", update));
+
+        verify(userCache, never()).update(anyString(), any());
+    }
+}
@@ -0,0 +1,22 @@
+package com.ecommerce.userservice.model;
+
+/**
+ * Public view of a user returned to other services: id, name and avatar only.
+ * Never carries contact details or activity timestamps.
+ */
+public class UserSummary implements UserSearchResult {
+
+    private final Long id;
+    private final String name;
+    private final String avatarUrl;
+
+    public UserSummary(User user) {
+        this.id = user.getId();
+        this.name = user.getName();
+        this.avatarUrl = user.getAvatarUrl();
+    }
+
+    public Long getId() { return id; }
+    public String getName() { return name; }
+    public String getAvatarUrl() { return avatarUrl; }
+}
@@ -0,0 +1,27 @@
+package com.ecommerce.userservice.security;
+
+/**
+ * Claims of a JWT whose signature and expiry have been checked.
+ */
+public class VerifiedToken {
+
+    private final String subject;
+    private final String email;
+    private final String name;
+    private final long expiresAtMillis;
+
+    public VerifiedToken(String subject, String email, String name, long expiresAtMillis) {
+        this.subject = subject;
+        this.email = email;
+        this.name = name;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getSubject() { return subject; }
+
+    public String getEmail() { return email; }
+
+    public String getName() { return name; }
+
+    public long getExpiresAtMillis() { return expiresAtMillis; }
+}
@@ -0,0 +1,191 @@
+package com.ecommerce.userservice.security;
+
+import com.ecommerce.userservice.cache.InvalidationBus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.SetParams;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Caches verified JWT claims, keyed by token digest, until the token expires.
+ * Revocations are recorded in Redis and broadcast to every node. While Redis is down,
+ * uncached tokens skip the revocation check for revocation-fail-open-seconds, then are
+ * rejected; 0 rejects them immediately.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final String REVOKED_PREFIX = "jwt:revoked:";
+    private static final String REVOCATION_CHANNEL = "jwt:revoked";
+
+    @Autowired
+    private JedisPool redisPool;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${user.token-cache.max-size:100000}")
+    private long maxSize;
+
+    @Value("${user.token-cache.revocation-fail-open-seconds:60}")
+    private long failOpenSeconds;
+
+    private Cache<String, VerifiedToken> verified;
+    // Recent revocations, for verifications that raced with the broadcast
+    private Cache<String, Boolean> recentlyRevoked;
+    private Timer verifyTimer;
+    private Counter uncheckedRevocations;
+    // Start of the current Redis outage, 0 while Redis answers
+    private volatile long unavailableSinceMillis;
+
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @PostConstruct
+    public void init() {
+        verified = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String digest, VerifiedToken token, long currentTime) {
+                        long remainingMillis = token.getExpiresAtMillis() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String digest, VerifiedToken token, long currentTime, long currentDuration) {
+                        return expireAfterCreate(digest, token, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        recentlyRevoked = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "user.token-cache");
+        verifyTimer = Timer.builder("user.token.verify")
+                .description("Full JWT parse and signature verification")
+                .register(meterRegistry);
+        Gauge.builder("user.token.verify.saved", this,
+                        cache -> cache.verified.stats().hitCount() * cache.verifyTimer.mean(TimeUnit.SECONDS))
+                .description("Estimated verification time avoided by cache hits")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        uncheckedRevocations = Counter.builder("user.token.revocation.unchecked")
+                .description("Tokens accepted without a revocation check while Redis was unavailable")
+                .register(meterRegistry);
+
+        invalidationBus.subscribe(REVOCATION_CHANNEL, this::dropRevoked, verified::invalidateAll);
+    }
+
+    /**
+     * Returns the cached claims for a token, or verifies it and caches the result.
+     * @param verifier Full signature and expiry verification, throws JwtException on failure
+     * @throws JwtException if the token is invalid, expired or revoked
+     */
+    public VerifiedToken getOrVerify(String token, Function<String, VerifiedToken> verifier) {
+        String digest = digest(token);
+        VerifiedToken cached = verified.getIfPresent(digest);
+        if (cached != null && cached.getExpiresAtMillis() > System.currentTimeMillis()) {
+            return cached;
+        }
+
+        if (isRevoked(digest)) {
+            throw new JwtException("Token has been revoked");
+        }
+        VerifiedToken claims = verifyTimer.record(() -> verifier.apply(token));
+        if (claims.getExpiresAtMillis() > System.currentTimeMillis()) {
+            verified.put(digest, claims);
+            // A revocation may have been broadcast while verifying
+            if (recentlyRevoked.getIfPresent(digest) != null) {
+                verified.invalidate(digest);
+                throw new JwtException("Token has been revoked");
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * Rejects a token on every node until it expires.
+     * @throws JedisException if Redis is unavailable
+     */
+    public void revoke(String token, long expiresAtMillis) {
+        String digest = digest(token);
+        long remainingMillis = expiresAtMillis - System.currentTimeMillis();
+        dropRevoked(digest);
+        if (remainingMillis <= 0) {
+            return;
+        }
+        try (Jedis redis = redisPool.getResource()) {
+            redis.set(REVOKED_PREFIX + digest, "1", SetParams.setParams().px(remainingMillis));
+        }
+        invalidationBus.publish(REVOCATION_CHANNEL, digest);
+    }
+
+    private void dropRevoked(String digest) {
+        recentlyRevoked.put(digest, Boolean.TRUE);
+        verified.invalidate(digest);
+    }
+
+    private boolean isRevoked(String digest) {
+        if (recentlyRevoked.getIfPresent(digest) != null) {
+            return true;
+        }
+        try (Jedis redis = redisPool.getResource()) {
+            boolean revoked = redis.exists(REVOKED_PREFIX + digest);
+            unavailableSinceMillis = 0;
+            return revoked;
+        } catch (JedisException e) {
+            long now = System.currentTimeMillis();
+            if (unavailableSinceMillis == 0) {
+                unavailableSinceMillis = now;
+            }
+            if (now - unavailableSinceMillis < failOpenSeconds * 1000) {
+                uncheckedRevocations.increment();
+                return false;
+            }
+            throw new JwtException("Token revocation status unavailable", e);
+        }
+    }
+
+    private String digest(String token) {
+        byte[] hash = sha256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().encodeToString(hash);
+    }
+}
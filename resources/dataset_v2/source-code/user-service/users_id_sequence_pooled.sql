@@ -0,0 +1,9 @@
+-- Pooled id allocation for User (see User.id).
+-- Each nextval() returns the top of a block of 50 ids, matching the entity's allocationSize.
+-- Raw INSERTs must take ids from such blocks, like the bulk import; the column default
+-- would spend a block per row.
+-- Run before deploying the new entity mapping.
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+
+-- Start the next block above every existing id
+SELECT setval('users_id_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM users));
@@ -0,0 +1,4 @@
+-- Ordered index for the (name, id) keyset pages of UserRepository.findByNameContainingIgnoreCaseAfter
+-- and for short name searches, which have no trigrams to use.
+-- On a large live table, run it with CONCURRENTLY outside a transaction.
+CREATE INDEX IF NOT EXISTS idx_users_name_id ON users (name, id);
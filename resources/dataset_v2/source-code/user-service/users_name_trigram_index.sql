@@ -0,0 +1,9 @@
+-- Trigram index for UserRepository.findByNameContainingIgnoreCase.
+-- Serves name ILIKE '%term%' and, unlike GIN, the ORDER BY term <<-> name ranking.
+-- On a large live table, run the CREATE/DROP INDEX with CONCURRENTLY outside a transaction.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_users_name_trgm_gist ON users USING gist (name gist_trgm_ops);
+
+-- Superseded GIN index from the first version of this script
+DROP INDEX IF EXISTS idx_users_name_trgm;
@@ -0,0 +1,4 @@
+-- Optimistic lock version for User (see User.version).
+-- Existing rows start at 0; Hibernate increments the column on every entity update.
+-- JDBC inserts such as the bulk import rely on the default.
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;